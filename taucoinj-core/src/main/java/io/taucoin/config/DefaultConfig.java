@@ -1,13 +1,11 @@
 package io.taucoin.config;
 
-import io.taucoin.datasource.HashMapDB;
 import io.taucoin.datasource.KeyValueDataSource;
 import io.taucoin.datasource.LevelDbDataSource;
 import io.taucoin.db.BlockStore;
 import io.taucoin.db.IndexedBlockStore;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
-import org.mapdb.Serializer;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -18,11 +16,10 @@ import org.springframework.context.annotation.Import;
 
 import javax.annotation.PostConstruct;
 import java.io.File;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
-import static io.taucoin.db.IndexedBlockStore.BLOCK_INFO_SERIALIZER;
 
 /**
  *
@@ -66,18 +63,14 @@ public class DefaultConfig {
                 .closeOnJvmShutdown()
                 .make();
 
-        Map<Long, List<IndexedBlockStore.BlockInfo>> indexMap = indexDB.hashMapCreate("index")
-                .keySerializer(Serializer.LONG)
-                .valueSerializer(BLOCK_INFO_SERIALIZER)
-                .counterEnable()
-                .makeOrGet();
+        Map<Long, List<IndexedBlockStore.BlockInfo>> indexMap = IndexedBlockStore.openIndex(indexDB);
 
         KeyValueDataSource blocksDB = appCtx.getBean(LevelDbDataSource.class, "blocks");
         blocksDB.init();
 
 
         IndexedBlockStore cache = new IndexedBlockStore();
-        cache.init(new HashMap<Long, List<IndexedBlockStore.BlockInfo>>(), new HashMapDB(), null, null);
+        cache.init(new ConcurrentHashMap<Long, List<IndexedBlockStore.BlockInfo>>(), null, null, null);
 
         IndexedBlockStore indexedBlockStore = new IndexedBlockStore();
         indexedBlockStore.init(indexMap, blocksDB, cache, indexDB);
@@ -4,6 +4,7 @@ import com.typesafe.config.Config;
 import com.typesafe.config.ConfigFactory;
 import com.typesafe.config.ConfigObject;
 import com.typesafe.config.ConfigRenderOptions;
+import com.typesafe.config.ConfigUtil;
 import io.taucoin.net.rlpx.NodeType;
 import io.taucoin.core.Genesis;
 import io.taucoin.core.genesis.GenesisLoader;
@@ -359,6 +360,39 @@ public class SystemProperties {
         return config.getInt("peer.channel.read.timeout");
     }
 
+    @ValidateMe
+    public int wireLogSample() {
+        return config.getInt("peer.wire.log.sample");
+    }
+
+    /**
+     * Whole messages are rendered for the trace listeners only if it's on
+     */
+    @ValidateMe
+    public boolean wireTrace() {
+        return config.getBoolean("peer.wire.trace");
+    }
+
+    @ValidateMe
+    public int peerRequestWindow() {
+        return config.getInt("peer.p2p.request.window");
+    }
+
+    @ValidateMe
+    public int peerRequestTimeout() {
+        return config.getInt("peer.p2p.request.timeout") * 1000;
+    }
+
+    @ValidateMe
+    public int peerRequestRetries() {
+        return config.getInt("peer.p2p.request.retries");
+    }
+
+    @ValidateMe
+    public int peerKnownTxs() {
+        return config.getInt("peer.p2p.knownTxs");
+    }
+
     @ValidateMe
     public Integer traceStartBlock() {
         return config.getInt("trace.startblock");
@@ -398,6 +432,21 @@ public class SystemProperties {
         this.databaseDir = dataBaseDir;
     }
 
+    /**
+     * LevelDB options of the named database, the options
+     * missing in its own section are taken from the 'default' one
+     */
+    public Config levelDbProfile(String name) {
+        Config defaults = levelDbDefaultProfile();
+        String path = ConfigUtil.joinPath("database", "leveldb", name);
+        return config.hasPath(path) ? config.getConfig(path).withFallback(defaults) : defaults;
+    }
+
+    @ValidateMe
+    public Config levelDbDefaultProfile() {
+        return config.getConfig("database.leveldb.default");
+    }
+
     @ValidateMe
     public boolean dumpCleanOnRestart() {
         return config.getBoolean("dump.clean.on.restart");
@@ -413,6 +462,11 @@ public class SystemProperties {
         return config.getBoolean("blockchain.only");
     }
 
+    @ValidateMe
+    public int blockVerifyThreads() {
+        return config.getInt("blockchain.verify.threads");
+    }
+
     @ValidateMe
     public int maxHashesAsk() {
         return config.getInt("sync.max.hashes.ask");
@@ -485,6 +539,30 @@ public class SystemProperties {
         return config.getInt("cache.flush.blocks");
     }
 
+    /**
+     * Size of the cached blocks to write them out, in bytes
+     */
+    @ValidateMe
+    public long cacheFlushSize() {
+        return config.getBytes("cache.flush.size");
+    }
+
+    /**
+     * Age of the oldest cached block to write them out, in seconds
+     */
+    @ValidateMe
+    public int cacheFlushAge() {
+        return config.getInt("cache.flush.age");
+    }
+
+    /**
+     * Summary size of decoded account states kept in memory, in bytes
+     */
+    @ValidateMe
+    public long cacheStateSize() {
+        return config.getLong("cache.state.size") * 1024 * 1024;
+    }
+
     @ValidateMe
     public String vmTraceDir() {
         return config.getString("vm.structured.dir");
@@ -675,6 +753,21 @@ public class SystemProperties {
         return config.getInt("transaction.outdated.threshold");
     }
 
+    @ValidateMe
+    public int txPoolCapacity() {
+        return config.getInt("transaction.pool.capacity");
+    }
+
+    @ValidateMe
+    public int txAdmissionPeerQueue() {
+        return config.getInt("transaction.admission.peer.queue");
+    }
+
+    @ValidateMe
+    public int txAdmissionBatch() {
+        return config.getInt("transaction.admission.batch");
+    }
+
     public void setGenesisInfo(String genesisInfo){
         this.genesisInfo = genesisInfo;
     }
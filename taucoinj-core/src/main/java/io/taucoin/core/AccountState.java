@@ -1,5 +1,6 @@
 package io.taucoin.core;
 
+import io.taucoin.db.ByteArrayWrapper;
 import io.taucoin.util.ByteUtil;
 import io.taucoin.util.RLP;
 import io.taucoin.util.RLPList;
@@ -20,9 +21,17 @@ public class AccountState implements Serializable {
     private byte[] rlpEncoded;
 
     /**
-     *  A list size equal to the number of transactions sent since 14 h before.
+     * Transactions sent by the account are kept in a separate keyspace
+     * of the state db: [address + time + hash] -> [hash, time], so the
+     * entries of an account sort by time. The account only keeps the
+     * number of the entries and the newest transaction time.
      */
-    private TreeMap<Long,byte[]> tranHistory = new TreeMap<Long,byte[]>();
+    private long historySize = 0;
+    private long historyLastTime = 0;
+
+    /* entries to write to and to delete from the state db, by key */
+    private TreeMap<ByteArrayWrapper, TransactionInfo> addedHistory = new TreeMap<>();
+    private TreeMap<ByteArrayWrapper, TransactionInfo> removedHistory = new TreeMap<>();
 
     /**
     * power owned by this account to new block.
@@ -61,13 +70,21 @@ public class AccountState implements Serializable {
         this.balance = items.get(1).getRLPData() == null ? BigInteger.ZERO
                 : new BigInteger(1, items.get(1).getRLPData());
 
-        if(items.size() > 2) {
-            RLPList trHis = (RLPList) items.get(2);
-            for (int i = 0; i < trHis.size(); ++i) {
-                RLPElement transactionHis = trHis.get(i);
-                TransactionInfo trinfo = new TransactionInfo(transactionHis.getRLPData());
-                this.tranHistory.put(trinfo.gettrTime(),trinfo.gettrHashcode());
+        if (items.size() == 4 && !(items.get(2) instanceof RLPList)) {
+            this.historySize = ByteUtil.byteArrayToLong(items.get(2).getRLPData());
+            this.historyLastTime = ByteUtil.byteArrayToLong(items.get(3).getRLPData());
+        } else {
+            // records of the old format embed their history,
+            // it is moved to the history keyspace when written
+            for (int i = 2; i < items.size(); ++i) {
+                if (!(items.get(i) instanceof RLPList)) continue;
+
+                TransactionInfo info = new TransactionInfo(items.get(i).getRLPData());
+                if (info.gettrTime() <= 0 || info.gettrHashcode() == null) continue;
+                addTransactionHistory(info.gettrTime(), info.gettrHashcode());
             }
+            this.rlpEncoded = null;
+            this.dirty = false;
         }
     }
 
@@ -84,12 +101,14 @@ public class AccountState implements Serializable {
         rlpEncoded = null;
         this.forgePower = forgePower.add(BigInteger.ONE);
         setDirty(true);
+        setDeleted(false);
     }
 
     public void reduceForgePower() {
         rlpEncoded = null;
         this.forgePower = forgePower.subtract(BigInteger.ONE);
         setDirty(true);
+        setDeleted(false);
     }
 
     public BigInteger getBalance() {
@@ -100,6 +119,7 @@ public class AccountState implements Serializable {
         if (value.signum() != 0) rlpEncoded = null;
         this.balance = balance.add(value);
         setDirty(true);
+        setDeleted(false);
         return this.balance;
     }
 
@@ -107,28 +127,117 @@ public class AccountState implements Serializable {
         if (value.signum() != 0) rlpEncoded = null;
         this.balance = balance.subtract(value);
         setDirty(true);
+        setDeleted(false);
         return this.balance;
     }
 
     public byte[] getEncoded() {
         if (rlpEncoded == null) {
-            byte[][] trHisEncoded = new byte[tranHistory.size() + 2][];
             byte[] forgePower = RLP.encodeBigInteger(this.forgePower);
             byte[] balance = RLP.encodeBigInteger(this.balance);
+            byte[] historySize = RLP.encodeBigInteger(BigInteger.valueOf(this.historySize));
+            byte[] historyLastTime = RLP.encodeBigInteger(BigInteger.valueOf(this.historyLastTime));
 
-            trHisEncoded[0] = forgePower;
-            trHisEncoded[1] = balance;
-            int i = 2;
-            for (long txTime : tranHistory.keySet()) {
-              TransactionInfo txf = new TransactionInfo(txTime,tranHistory.get(txTime));
-              trHisEncoded[i] = txf.getEncoded();
-              ++i;
-            }
-            this.rlpEncoded = RLP.encodeList(trHisEncoded);
-         }
+            this.rlpEncoded = RLP.encodeList(forgePower, balance, historySize, historyLastTime);
+        }
         return rlpEncoded;
     }
 
+    /**
+     * @return true if the record is of the old format, its history has
+     *         not been moved to the history keyspace yet
+     */
+    public static boolean isLegacyEncoded(byte[] rlpData) {
+        RLPList items = (RLPList) RLP.decode2(rlpData).get(0);
+        return items.size() != 4 || items.get(2) instanceof RLPList;
+    }
+
+    /**
+     * Appends a sent transaction to the account history
+     */
+    public void addTransactionHistory(long txTime, byte[] txHash) {
+        rlpEncoded = null;
+        TransactionInfo info = new TransactionInfo(txTime, txHash);
+        ByteArrayWrapper key = new ByteArrayWrapper(info.getKey());
+        removedHistory.remove(key);
+        addedHistory.put(key, info);
+        ++historySize;
+        if (txTime > historyLastTime) historyLastTime = txTime;
+
+        setDirty(true);
+        setDeleted(false);
+    }
+
+    /**
+     * Drops an entry of the account history, the newest
+     * transaction time is kept as an upper bound
+     */
+    public void removeTransactionHistory(TransactionInfo info) {
+        rlpEncoded = null;
+        ByteArrayWrapper key = new ByteArrayWrapper(info.getKey());
+        if (addedHistory.remove(key) == null) {
+            removedHistory.put(key, info);
+        }
+        --historySize;
+
+        setDirty(true);
+        setDeleted(false);
+    }
+
+    /**
+     * Rolls the account back to a previous state
+     *
+     * @param previous the account as it was, its history is not used
+     * @param added entries appended since then, they are dropped
+     * @param dropped entries which slid out of the history since then, they are put back
+     */
+    public void restore(AccountState previous, List<TransactionInfo> added, List<TransactionInfo> dropped) {
+        rlpEncoded = null;
+        this.forgePower = previous.forgePower;
+        this.balance = previous.balance;
+        this.historySize = previous.historySize;
+        this.historyLastTime = previous.historyLastTime;
+
+        for (TransactionInfo info : added) {
+            ByteArrayWrapper key = new ByteArrayWrapper(info.getKey());
+            addedHistory.remove(key);
+            removedHistory.put(key, info);
+        }
+        for (TransactionInfo info : dropped) {
+            ByteArrayWrapper key = new ByteArrayWrapper(info.getKey());
+            removedHistory.remove(key);
+            addedHistory.put(key, info);
+        }
+
+        setDirty(true);
+        setDeleted(false);
+    }
+
+    public long getHistorySize() {
+        return historySize;
+    }
+
+    /**
+     * @return the newest transaction time in the history
+     */
+    public long getHistoryLastTime() {
+        return historyLastTime;
+    }
+
+    /**
+     * @return history entries which are not in the state db yet, by key
+     */
+    public TreeMap<ByteArrayWrapper, TransactionInfo> getAddedHistory() {
+        return addedHistory;
+    }
+
+    /**
+     * @return history entries to be deleted from the state db, by key
+     */
+    public TreeMap<ByteArrayWrapper, TransactionInfo> getRemovedHistory() {
+        return removedHistory;
+    }
+
     public void setDirty(boolean dirty) {
         this.dirty = dirty;
     }
@@ -149,6 +258,10 @@ public class AccountState implements Serializable {
         AccountState accountState = new AccountState();
         accountState.addToBalance(this.getBalance());
         accountState.setforgePower(this.getforgePower());
+        accountState.historySize = this.historySize;
+        accountState.historyLastTime = this.historyLastTime;
+        accountState.addedHistory.putAll(this.addedHistory);
+        accountState.removedHistory.putAll(this.removedHistory);
         accountState.setDirty(false);
 
         return accountState;
@@ -156,10 +269,8 @@ public class AccountState implements Serializable {
 
     public String toString() {
         String ret = "  Nonce: " + this.getforgePower().toString() + "\n" +
-                "  Balance: " + getBalance() + "\n";
+                "  Balance: " + getBalance() + "\n" +
+                "  History: " + getHistorySize() + "\n";
         return ret;
     }
-    public TreeMap<Long,byte[]> getTranHistory(){
-        return tranHistory;
-    }
 }
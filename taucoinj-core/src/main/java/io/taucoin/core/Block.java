@@ -54,6 +54,11 @@ public class Block {
     private BigInteger cumulativeDifficulty = BigInteger.ZERO; //this is total chain difficulty
     private BigInteger cumulativeFee = BigInteger.ZERO;
     private byte[] forgerPubkey;
+    /* Recovered from the block signature on first use */
+    private ECKey forgerKey;
+    /* Memoized hashes, the hash covers the signature so sign() resets it */
+    private byte[] hash;
+    private byte[] rawHash;
 
     protected byte[] rlpEncoded;
     private byte[] rlpEncodedMsg;
@@ -202,15 +207,8 @@ public class Block {
 
         this.parsed = true;
         if(isMsg){
-            ECKey key;
-            try{
-                key = ECKey.signatureToKey(this.getRawHash(),blockSignature.toBase64());
-                if(key != null){
-                    forgerPubkey = key.getCompressedPubKey();
-                }
-            }catch (SignatureException e){
-                forgerPubkey = ByteUtil.intToBytes(0);
-            }
+            ECKey key = getForgerKey();
+            forgerPubkey = key != null ? key.getCompressedPubKey() : ByteUtil.intToBytes(0);
         }
     }
 
@@ -232,11 +230,26 @@ public class Block {
         return null;
     }
 
+    /**
+     * Header fields as they are served to the syncing peers:
+     * [version, timeStamp, previousHeaderHash, forgerPubkey]
+     */
+    public byte[] getEncodedHeader() {
+        if (!parsed) parseRLP();
+        return RLP.encodeList(RLP.encodeByte(this.version),
+                RLP.encodeElement(this.timeStamp),
+                RLP.encodeElement(this.previousHeaderHash),
+                RLP.encodeElement(this.forgerPubkey));
+    }
+
     public byte[] getHash() {
         if (!parsed) parseRLP();
         //current block hash (sha256 ripemd160)
         //return HashUtil.ripemd160(HashUtil.sha256(this.getEncoded()));
-        return HashUtil.ripemd160(HashUtil.sha256(this.getHashEncoded()));
+        if (hash == null) {
+            hash = HashUtil.ripemd160(HashUtil.sha256(this.getHashEncoded()));
+        }
+        return hash;
     }
 
     public byte[] getPreviousHeaderHash() {
@@ -433,15 +446,8 @@ public class Block {
             byte[] signature = getSignatureEncoded();
             byte[] previousHeaderHash = RLP.encodeElement(this.previousHeaderHash);
 
-            ECKey key;
-            try{
-                key = ECKey.signatureToKey(this.getRawHash(),blockSignature.toBase64());
-                if(key != null){
-                    forgerPubkey = key.getCompressedPubKey();
-                }
-            }catch (SignatureException e){
-                forgerPubkey = ByteUtil.intToBytes(0);
-            }
+            ECKey key = getForgerKey();
+            forgerPubkey = key != null ? key.getCompressedPubKey() : ByteUtil.intToBytes(0);
 
             List<byte[]> block = getFullBodyElements();
             logger.info("size of encode element is {}",block.size());
@@ -560,32 +566,48 @@ public class Block {
 
     public byte[] getRawHash() {
         if (!parsed) parseRLP();
-        byte[] plainMsg = this.getEncodedRaw();
-        return HashUtil.sha3(plainMsg);
+        if (rawHash == null) {
+            byte[] plainMsg = this.getEncodedRaw();
+            rawHash = HashUtil.sha3(plainMsg);
+        }
+        return rawHash;
     }
 
     public void sign(byte[] privKeyBytes) throws ECKey.MissingPrivateKeyException {
         byte[] hash = this.getRawHash();
         ECKey key = ECKey.fromPrivate(privKeyBytes).decompress();
         this.blockSignature = key.sign(hash);
+        this.forgerKey = null;
+        this.hash = null;
         this.rlpEncoded = null;
         this.rlpEncodedMsg = null;
     }
 
+    /**
+     * Public key of the forger recovered from the block signature,
+     * the recovery is done once and the key is kept with the block
+     *
+     * @return forger key or null if the signature doesn't allow to recover it
+     */
+    public ECKey getForgerKey() {
+        if (!parsed) parseRLP();
+        if (forgerKey == null) {
+            try {
+                forgerKey = ECKey.signatureToKey(this.getRawHash(), this.blockSignature);
+            } catch (SignatureException e) {
+                logger.error("Cannot recover forger key of block {}: {}", number, e.getMessage());
+                return null;
+            }
+        }
+        return forgerKey;
+    }
+
     /**
      * verify block signature with readable message and signature
      * @return
      */
     public boolean verifyBlockSignature() {
-        ECKey key;
-        try {
-            key = ECKey.signatureToKey(this.getRawHash(), this.getblockSignature().toBase64());
-        }catch (SignatureException e){
-            logger.error(e.getMessage());
-            return false;
-        }
-        byte[] forger = key.getAddress();
-        return true;
+        return getForgerKey() != null;
     }
 
     public String getShortDescr() {
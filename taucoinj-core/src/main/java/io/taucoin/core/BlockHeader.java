@@ -41,6 +41,9 @@ public class BlockHeader {
      */
     private long blockNumber = -1;
 
+    /* Memoized header hash, reset by the setters */
+    private byte[] hash;
+
     public BlockHeader(byte[] encoded) {
         this((RLPList) RLP.decode2(encoded).get(0));
     }
@@ -70,12 +73,14 @@ public class BlockHeader {
 
     public void setVersion(byte version) {
         this.version = version;
+        this.hash = null;
     }
 
     public byte getVersion(){ return version;}
 
     public void setPreviousHeaderHash(byte[] previousHeaderHash) {
         this.previousHeaderHash = previousHeaderHash;
+        this.hash = null;
     }
 
     public byte[] getPreviousHeaderHash() {
@@ -84,6 +89,7 @@ public class BlockHeader {
 
     public void setTimeStamp(byte[] timeStamp) {
         this.timeStamp = timeStamp;
+        this.hash = null;
     }
 
     public byte[] getTimeStamp() {
@@ -92,6 +98,7 @@ public class BlockHeader {
 
     public void setGeneratorPublicKey(byte[] generatorPublicKey) {
         this.generatorPublicKey = generatorPublicKey;
+        this.hash = null;
     }
 
     public byte[] getGeneratorPublicKey() {
@@ -110,7 +117,10 @@ public class BlockHeader {
     }
 
     public byte[] getHeaderHash() {
-       return HashUtil.ripemd160(HashUtil.sha256(this.getEncoded()));
+       if (hash == null) {
+           hash = HashUtil.ripemd160(HashUtil.sha256(this.getEncoded()));
+       }
+       return hash;
     }
 
     public byte[] getHash() {
@@ -6,7 +6,9 @@ import io.taucoin.util.RLPElement;
 import io.taucoin.util.RLPList;
 
 import java.math.BigInteger;
+import java.util.Arrays;
 import java.util.List;
+import java.util.concurrent.ForkJoinTask;
 
 import static io.taucoin.util.ByteUtil.EMPTY_BYTE_ARRAY;
 import static io.taucoin.util.TimeUtils.secondsToMillis;
@@ -31,6 +33,8 @@ public class BlockWrapper {
     private byte[] nodeId;
     private String remoteAddress;
 
+    private ForkJoinTask<Boolean> preVerification;
+
     public BlockWrapper(Block block, byte[] nodeId, String remoteAddress) {
         this(block, false, nodeId, remoteAddress);
     }
@@ -124,6 +128,27 @@ public class BlockWrapper {
         return System.currentTimeMillis() - receivedAt;
     }
 
+    /**
+     * Starts recovering the block signatures in background,
+     * see {@link SignatureVerifier#submit(Block)}
+     */
+    public void startPreVerification() {
+        if (preVerification == null) {
+            preVerification = SignatureVerifier.submit(block);
+        }
+    }
+
+    /**
+     * Waits for the background verification to finish,
+     * must be called before the block is handed to the blockchain
+     */
+    public void awaitPreVerification() {
+        if (preVerification != null) {
+            preVerification.join();
+            preVerification = null;
+        }
+    }
+
     public byte[] getBytes() {
         byte[] blockBytes = block.getEncoded();
         byte[] importFailedBytes = RLP.encodeBigInteger(BigInteger.valueOf(importFailedAt));
@@ -164,4 +189,9 @@ public class BlockWrapper {
 
         return block.isEqual(wrapper.block);
     }
+
+    @Override
+    public int hashCode() {
+        return Arrays.hashCode(block.getHash());
+    }
 }
@@ -54,6 +54,8 @@ public interface Blockchain {
 
     Transaction getTransactionByHash(byte[] hash);
 
+    TransactionLocation getTransactionLocation(byte[] hash);
+
     Block createNewBlock(Block parent, BigInteger baseTarget, byte[] generationSignature,
                          BigInteger cumulativeDifficulty, List<Transaction> transactions);
 
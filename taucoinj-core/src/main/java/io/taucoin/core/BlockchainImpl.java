@@ -22,7 +22,6 @@ import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.math.BigInteger;
-import java.security.SignatureException;
 import java.util.*;
 
 import static java.lang.Math.max;
@@ -75,8 +74,14 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
     @Autowired
     private BlockStore blockStore;
 
-    private Block bestBlock;
+    /**
+     * Chain head published by the importing thread, read without
+     * taking the chain monitor so peers and RPC never wait for import
+     */
+    private volatile ChainHead head = new ChainHead(null, ZERO);
 
+    // total difficulty of the blocks applied so far, accessed by the
+    // importing thread only and published along with the best block
     private BigInteger totalDifficulty = ZERO;
 
     @Autowired
@@ -137,7 +142,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
     @Override
     public long getSize() {
-        return bestBlock.getNumber() + 1;
+        return getBestBlock().getNumber() + 1;
     }
 
     @Override
@@ -147,7 +152,21 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
     @Override
     public Transaction getTransactionByHash(byte[] hash) {
-        throw new UnsupportedOperationException("TODO: will be implemented soon "); // FIXME: go and fix me
+
+        TransactionLocation location = blockStore.getTransactionLocation(hash);
+        if (location == null) return null;
+
+        Block block = blockStore.getBlockByHash(location.getBlockHash());
+        if (block == null || location.getIndex() < 0
+                || location.getIndex() >= block.getTransactionsList().size()) return null;
+
+        Transaction tx = block.getTransactionsList().get(location.getIndex());
+        return Arrays.equals(tx.getHash(), hash) ? tx : null;
+    }
+
+    @Override
+    public TransactionLocation getTransactionLocation(byte[] hash) {
+        return blockStore.getTransactionLocation(hash);
     }
 
     @Override
@@ -161,13 +180,13 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
     }
 
     @Override
-    public synchronized List<byte[]> getListOfHashesStartFrom(byte[] hash, int qty) {
+    public List<byte[]> getListOfHashesStartFrom(byte[] hash, int qty) {
         return blockStore.getListHashesEndWith(hash, qty);
     }
 
     @Override
-    public synchronized List<byte[]> getListOfHashesStartFromBlock(long blockNumber, int qty) {
-        long bestNumber = bestBlock.getNumber();
+    public List<byte[]> getListOfHashesStartFromBlock(long blockNumber, int qty) {
+        long bestNumber = getBestBlock().getNumber();
 
         if (blockNumber > bestNumber) {
             return emptyList();
@@ -179,9 +198,13 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
         long endNumber = blockNumber + qty - 1;
 
-        Block block = getBlockByNumber(endNumber);
+        byte[] endHash = blockStore.getBlockHashByNumber(endNumber);
+
+        if (endHash == null) {
+            return emptyList();
+        }
 
-        List<byte[]> hashes = blockStore.getListHashesEndWith(block.getHash(), qty);
+        List<byte[]> hashes = blockStore.getListHashesEndWith(endHash, qty);
 
         // asc order of hashes is required in the response
         Collections.reverse(hashes);
@@ -222,10 +245,16 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
             for (Block undoBlock : undoBlocks) {
                 logger.info("Try to disconnect block, block number: {}, hash: {}",
                         undoBlock.getNumber(), Hex.toHexString(undoBlock.getHash()));
-                ECKey key;
-                try {
-                    key = ECKey.signatureToKey(undoBlock.getRawHash(), undoBlock.getblockSignature().toBase64());
-                }catch (SignatureException e){
+
+                byte[] journal = blockStore.getUndoJournal(undoBlock.getHash());
+                if (journal != null) {
+                    new UndoJournal(journal).undo(track);
+                    continue;
+                }
+
+                // the block was applied before undo journals were kept
+                ECKey key = undoBlock.getForgerKey();
+                if (key == null) {
                     return DISCONNECTED_FAILED;
                 }
                 for (Transaction tx : undoBlock.getTransactionsList()){
@@ -266,22 +295,26 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
             if (isValid) {
                 logger.info("Beginning to re-branch.");
-                track.commit();
 
+                // the store goes first, the state commit records the block,
+                // on start the state is moved back to the stored chain with
+                // the undo journals if the cached blocks were lost
                 blockStore.saveBlock(block, totalDifficulty, true);
-                setBestBlock(block);
-
                 blockStore.reBranchBlocks(undoBlocks, newBlocks);
 
-//              if (!byTest && needFlush(block)) {
-                repository.flush();
-                blockStore.flush();
-                System.gc();
-//              }
+                track.commit(block.getHash());
+                setBestBlock(block);
+
+                if (!byTest && needFlush()) {
+                    repository.flush();
+                    blockStore.flushAsync();
+                }
 
                 return IMPORTED_BEST;
             } else {
                 track.rollback();
+                // drop the difficulty of the new blocks applied before the failure
+                totalDifficulty = head.totalDifficulty;
 
                 return INVALID_BLOCK;
             }
@@ -314,10 +347,8 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
             BigInteger baseTarget = ProofOfTransaction.calculateRequiredBaseTarget(preBlock, blockStore);
             block.setBaseTarget(baseTarget);
-            ECKey key;
-            try {
-                key = ECKey.signatureToKey(block.getRawHash(), block.getblockSignature().toBase64());
-            }catch (SignatureException e){
+            ECKey key = block.getForgerKey();
+            if (key == null) {
                 return INVALID_BLOCK;
             }
             byte[] generationSignature = ProofOfTransaction.
@@ -355,7 +386,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
         // The simple case got the block
         // to connect to the main chain
-        if (bestBlock.isParentOf(block)) {
+        if (getBestBlock().isParentOf(block)) {
             recordBlock(block);
 
             if (add(block)) {
@@ -408,8 +439,8 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
         return NO_PARENT;
     }
 
-    public synchronized Block createNewBlock(Block parent, BigInteger baseTarget, byte[] generationSignature,
-                                             BigInteger cumulativeDifficulty, List<Transaction> txs) {
+    public Block createNewBlock(Block parent, BigInteger baseTarget, byte[] generationSignature,
+                                 BigInteger cumulativeDifficulty, List<Transaction> txs) {
 
         // adjust time to parent block this may happen due to system clocks difference
         Long time = System.currentTimeMillis() / 1000;
@@ -442,7 +473,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
     public synchronized boolean add(Block block) {
 
         if (exitOn < block.getNumber()) {
-            System.out.print("Exiting after block.number: " + bestBlock.getNumber());
+            System.out.print("Exiting after block.number: " + getBestBlock().getNumber());
             repository.flush();
             blockStore.flush();
             System.exit(-1);
@@ -458,7 +489,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
             return false;
 
         // keep chain continuity
-        if (!Arrays.equals(bestBlock.getHash(),
+        if (!Arrays.equals(getBestBlock().getHash(),
                 block.getPreviousHeaderHash())) return false;
 
         if (block.getNumber() >= config.traceStartBlock() && config.traceStartBlock() != -1) {
@@ -470,16 +501,18 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
             return false;
         }
 
-        track.commit();
-
-        storeBlock(block);
+        // the block is stored before the state it leads to is committed,
+        // the state records the block, its header record and undo journal
+        // are written at once, so the state can be moved back over it
+        saveBlock(block);
+        track.commit(block.getHash());
+        setStoredBestBlock(block);
 
 
-//        if (!byTest && needFlush(block)) {
+        if (!byTest && needFlush()) {
             repository.flush();
-            blockStore.flush();
-            System.gc();
-//        }
+            blockStore.flushAsync();
+        }
 
         // Remove all wallet transactions as they already approved by the net
         wallet.removeTransactions(block.getTransactionsList());
@@ -491,14 +524,11 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
         return true;
     }
 
-    private boolean needFlush(Block block) {
-        if (config.cacheFlushMemory() > 0) {
-            return needFlushByMemory(config.cacheFlushMemory());
-        } else if (config.cacheFlushBlocks() > 0) {
-            return block.getNumber() % config.cacheFlushBlocks() == 0;
-        } else {
-            return needFlushByMemory(.7);
+    private boolean needFlush() {
+        if (config.cacheFlushMemory() > 0 && needFlushByMemory(config.cacheFlushMemory())) {
+            return true;
         }
+        return blockStore.needFlush();
     }
 
     private boolean needFlushByMemory(double maxMemoryPercents) {
@@ -596,13 +626,14 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
         }
 
         long referenceTime = 0;
-        long referenceHeight = bestBlock.getNumber() - lockTime;
+        long bestNumber = getBestBlock().getNumber();
+        long referenceHeight = bestNumber - lockTime;
         // this is dangerous behavior,a smart node will not accept it because this may be memory overflow hack.
         if (referenceHeight < 0){
             return true;
         }
 
-        if (referenceHeight <= bestBlock.getNumber()) {
+        if (referenceHeight <= bestNumber) {
             referenceTime = ByteUtil.byteArrayToLong(blockStore.
                     getChainBlockByNumber(referenceHeight).getTimestamp());
         } else {
@@ -632,11 +663,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
                 return false;
             }
         }
-        ECKey key = null;
-        try{
-            key = ECKey.signatureToKey(block.getRawHash(),block.getblockSignature().toBase64());
-        }catch (SignatureException e){
-        }
+        ECKey key = block.getForgerKey();
         if( key == null ){
             logger.error("miner pubkey is null .....");
             key = new ECKey();
@@ -757,12 +784,16 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
         Repository cacheTrack;
         boolean isValid = true;
-        ECKey key = null;
-        try {
-            key = ECKey.signatureToKey(block.getRawHash(), block.getblockSignature().toBase64());
-        }catch (SignatureException e){
+        // recovers forger and senders in parallel, the loop below reuses them
+        if (!SignatureVerifier.verify(block)) {
+            logger.error("Block contains invalid signature, block number {}", block.getNumber());
+            return false;
+        }
+        ECKey key = block.getForgerKey();
+        if (key == null) {
             return false;
         }
+        UndoJournal journal = UndoJournal.record(block, repo, key.getAddress());
         for (Transaction tx : block.getTransactionsList()) {
             stateLogger.info("apply block: [{}] tx: [{}] ", block.getNumber(), tx.toString());
 
@@ -786,6 +817,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
             return false;
         }
 
+        blockStore.saveUndoJournal(block.getHash(), journal.getEncoded());
         updateTotalDifficulty(block);
 
         long totalTime = System.nanoTime() - saveTime;
@@ -798,6 +830,12 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
     @Override
     public synchronized void storeBlock(Block block) {
 
+        saveBlock(block);
+        setStoredBestBlock(block);
+    }
+
+    private void saveBlock(Block block) {
+
         if (fork)
             blockStore.saveBlock(block, totalDifficulty, false);
         else
@@ -805,6 +843,9 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
         logger.info("Block saved: number: {}, hash: {}, TD: {}",
                 block.getNumber(), block.getShortHash(), totalDifficulty);
+    }
+
+    private void setStoredBestBlock(Block block) {
 
         setBestBlock(block);
 
@@ -832,23 +873,22 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
 
     @Override
     public void setBestBlock(Block block) {
-        bestBlock = block;
+        head = new ChainHead(block, totalDifficulty);
     }
 
     @Override
-    public synchronized Block getBestBlock() {
-        // the method is synchronized since the bestBlock might be
-        // temporarily switched to the fork while importing non-best block
-        return bestBlock;
+    public Block getBestBlock() {
+        return head.bestBlock;
     }
 
     @Override
     public void close() {
+        blockStore.flush();
     }
 
     @Override
     public BigInteger getTotalDifficulty() {
-        return totalDifficulty;
+        return head.totalDifficulty;
     }
 
     @Override
@@ -858,8 +898,9 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
     }
 
     @Override
-    public void setTotalDifficulty(BigInteger totalDifficulty) {
+    public synchronized void setTotalDifficulty(BigInteger totalDifficulty) {
         this.totalDifficulty = totalDifficulty;
+        head = new ChainHead(head.bestBlock, totalDifficulty);
     }
 
     private void recordBlock(Block block) {
@@ -880,6 +921,7 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
             fw = new FileWriter(dumpFile.getAbsoluteFile(), true);
             bw = new BufferedWriter(fw);
 
+            Block bestBlock = getBestBlock();
             if (bestBlock.isGenesis()) {
                 bw.write(Hex.toHexString(bestBlock.getEncoded()));
                 bw.write("\n");
@@ -934,20 +976,18 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
     }
 
     @Override
-    public synchronized List<BlockHeader> getListOfHeadersStartFrom(BlockIdentifier identifier, int skip, int limit, boolean reverse) {
+    public List<BlockHeader> getListOfHeadersStartFrom(BlockIdentifier identifier, int skip, int limit, boolean reverse) {
         long blockNumber = identifier.getNumber();
 
         if (identifier.getHash() != null) {
-            Block block = getBlockByHash(identifier.getHash());
+            blockNumber = blockStore.getBlockNumber(identifier.getHash());
 
-            if (block == null) {
+            if (blockNumber < 0) {
                 return emptyList();
             }
-
-            blockNumber = block.getNumber();
         }
 
-        long bestNumber = bestBlock.getNumber();
+        long bestNumber = getBestBlock().getNumber();
 
         if (bestNumber < blockNumber) {
             return emptyList();
@@ -993,17 +1033,11 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
             startNumber = blockNumber + skip + qty - 1;
         }
 
-        Block block = getBlockByNumber(startNumber);
-
-        if (block == null) {
-            return null;
-        }
-
-        return block.getHash();
+        return blockStore.getBlockHashByNumber(startNumber);
     }
 
     @Override
-    public synchronized List<byte[]> getListOfBodiesByHashes(List<byte[]> hashes) {
+    public List<byte[]> getListOfBodiesByHashes(List<byte[]> hashes) {
         List<byte[]> bodies = new ArrayList<>(hashes.size());
 
         for (byte[] hash : hashes) {
@@ -1015,4 +1049,14 @@ public class BlockchainImpl implements io.taucoin.facade.Blockchain {
         return bodies;
     }
 
+    private static final class ChainHead {
+
+        final Block bestBlock;
+        final BigInteger totalDifficulty;
+
+        ChainHead(Block bestBlock, BigInteger totalDifficulty) {
+            this.bestBlock = bestBlock;
+            this.totalDifficulty = totalDifficulty;
+        }
+    }
 }
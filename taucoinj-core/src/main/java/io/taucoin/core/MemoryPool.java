@@ -0,0 +1,148 @@
+package io.taucoin.core;
+
+import io.taucoin.db.ByteArrayWrapper;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+/**
+ * Wire transactions indexed by hash, by {@link MemoryPoolPolicy} priority
+ * and by sender, all of the operations but listing take O(log n).
+ *
+ * The pool holds at most <code>capacity</code> transactions, the one
+ * with the lowest priority is dropped when it gets exceeded. <br>
+ * The pool isn't thread safe, callers synchronize on it.
+ *
+ * @author taucoin core
+ * @since 10.07.2019
+ */
+public class MemoryPool {
+
+    // sender transactions go in the order they were created
+    private static final Comparator<MemoryPoolEntry> TIME_ORDER = new Comparator<MemoryPoolEntry>() {
+        @Override
+        public int compare(MemoryPoolEntry entry1, MemoryPoolEntry entry2) {
+            if (entry1.buildTime != entry2.buildTime) {
+                return entry1.buildTime < entry2.buildTime ? -1 : 1;
+            }
+            return entry1.hash.compareTo(entry2.hash);
+        }
+    };
+
+    private final int capacity;
+
+    private final Map<ByteArrayWrapper, MemoryPoolEntry> entries = new HashMap<>();
+    private final TreeSet<MemoryPoolEntry> ordered = new TreeSet<>(new MemoryPoolPolicy());
+    private final Map<ByteArrayWrapper, TreeSet<MemoryPoolEntry>> senders = new HashMap<>();
+
+    public MemoryPool(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * Adds the entry unless a transaction with the same hash is already in
+     *
+     * @return entry dropped to keep the pool within its capacity, it may be
+     *         the added one if it has the lowest priority, <code>null</code>
+     *         if nothing is dropped
+     */
+    public MemoryPoolEntry add(MemoryPoolEntry entry) {
+        if (entries.containsKey(entry.hash)) return null;
+
+        entries.put(entry.hash, entry);
+        ordered.add(entry);
+
+        ByteArrayWrapper sender = new ByteArrayWrapper(entry.tx.getSender());
+        TreeSet<MemoryPoolEntry> senderEntries = senders.get(sender);
+        if (senderEntries == null) {
+            senderEntries = new TreeSet<>(TIME_ORDER);
+            senders.put(sender, senderEntries);
+        }
+        senderEntries.add(entry);
+
+        if (entries.size() > capacity) {
+            MemoryPoolEntry lowest = ordered.last();
+            remove(lowest.hash);
+            return lowest;
+        }
+        return null;
+    }
+
+    /**
+     * @return removed entry or <code>null</code> if there is no such one
+     */
+    public MemoryPoolEntry remove(byte[] hash) {
+        return remove(new ByteArrayWrapper(hash));
+    }
+
+    private MemoryPoolEntry remove(ByteArrayWrapper hash) {
+        MemoryPoolEntry entry = entries.remove(hash);
+        if (entry == null) return null;
+
+        ordered.remove(entry);
+
+        ByteArrayWrapper sender = new ByteArrayWrapper(entry.tx.getSender());
+        TreeSet<MemoryPoolEntry> senderEntries = senders.get(sender);
+        if (senderEntries != null) {
+            senderEntries.remove(entry);
+            if (senderEntries.isEmpty()) senders.remove(sender);
+        }
+        return entry;
+    }
+
+    /**
+     * @return entry of the transaction or <code>null</code> if there is no such one
+     */
+    public MemoryPoolEntry get(byte[] hash) {
+        return entries.get(new ByteArrayWrapper(hash));
+    }
+
+    public boolean contains(byte[] hash) {
+        return entries.containsKey(new ByteArrayWrapper(hash));
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * @return all the entries, highest priority first
+     */
+    public List<MemoryPoolEntry> getEntries() {
+        return new ArrayList<>(ordered);
+    }
+
+    /**
+     * @return transactions of the pool, highest priority first
+     */
+    public List<Transaction> getTransactions() {
+        List<Transaction> txs = new ArrayList<>(ordered.size());
+        for (MemoryPoolEntry entry : ordered) {
+            txs.add(entry.tx);
+        }
+        return txs;
+    }
+
+    /**
+     * @return transactions sent by the address, oldest first
+     */
+    public List<Transaction> getSenderTransactions(byte[] sender) {
+        TreeSet<MemoryPoolEntry> senderEntries = senders.get(new ByteArrayWrapper(sender));
+        if (senderEntries == null) return Collections.emptyList();
+
+        List<Transaction> txs = new ArrayList<>(senderEntries.size());
+        for (MemoryPoolEntry entry : senderEntries) {
+            txs.add(entry.tx);
+        }
+        return txs;
+    }
+}
@@ -1,5 +1,6 @@
 package io.taucoin.core;
 
+import io.taucoin.db.ByteArrayWrapper;
 import io.taucoin.util.ByteUtil;
 import org.slf4j.*;
 
@@ -13,21 +14,28 @@ public class MemoryPoolEntry{
     public Transaction tx;
     public long buildTime;
     public long fee;
+    public ByteArrayWrapper hash;
 
     public MemoryPoolEntry(Transaction tx) {
         this.tx = tx;
         this.buildTime = ByteUtil.byteArrayToLong(tx.getTime());
         this.fee = ByteUtil.byteArrayToLong(tx.getFee());
+        this.hash = new ByteArrayWrapper(tx.getHash());
     }
 
     public static MemoryPoolEntry with(Transaction tx) {
         return new MemoryPoolEntry(tx);
     }
+
     @Override
     public boolean equals(Object entry){
-        if(entry.hashCode() == entry.hashCode())
-            return true;
-        return false;
+        if (this == entry) return true;
+        if (!(entry instanceof MemoryPoolEntry)) return false;
+        return hash.equals(((MemoryPoolEntry) entry).hash);
     }
-}
 
+    @Override
+    public int hashCode() {
+        return hash.hashCode();
+    }
+}
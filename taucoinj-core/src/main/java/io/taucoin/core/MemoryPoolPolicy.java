@@ -1,5 +1,6 @@
 package io.taucoin.core;
 
+import io.taucoin.util.FastByteComparisons;
 import org.slf4j.*;
 
 import java.util.Comparator;
@@ -8,18 +9,21 @@ public class MemoryPoolPolicy implements Comparator<MemoryPoolEntry> {
 
     private static final Logger log = LoggerFactory.getLogger(MemoryPoolPolicy.class);
 
+    /**
+     * Higher fee goes first, older one first among the same fee,
+     * the hash makes the order total so sorted sets keep every entry
+     */
     @Override
     public int compare(MemoryPoolEntry entry1, MemoryPoolEntry entry2) {
-        if (Utils.bytesToHexString(entry1.tx.getHash()).equals(Utils.bytesToHexString(entry2.tx.getHash()))) {
-            return 0;
+        if (entry1.fee != entry2.fee) {
+            return entry1.fee > entry2.fee ? -1 : 1;
         }
-        if ( entry2.fee > 0 && entry1.fee > entry2.fee ) {
-            return 1;
+        if (entry1.buildTime != entry2.buildTime) {
+            return entry1.buildTime < entry2.buildTime ? -1 : 1;
         }
-        if (entry1.buildTime < entry2.buildTime) {
-            return 1;
-        }
-        return -1;
+        byte[] hash1 = entry1.hash.getData();
+        byte[] hash2 = entry2.hash.getData();
+        return FastByteComparisons.compareTo(hash1, 0, hash1.length, hash2, 0, hash2.length);
     }
 
     @Override
@@ -0,0 +1,116 @@
+package io.taucoin.core;
+
+import io.taucoin.db.ByteArrayWrapper;
+
+import java.math.BigInteger;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import static java.math.BigInteger.ZERO;
+
+/**
+ * Amount and number of transactions each sender has waiting in the
+ * pending state, used to check a new transaction against the balance
+ * left after the ones already accepted.
+ *
+ * Senders are locked one by one, so transactions of different senders
+ * are accounted concurrently. An account is dropped from the ledger
+ * once its last transaction is released.
+ *
+ * @author taucoin core
+ * @since 13.07.2019
+ */
+public class PendingSpendLedger {
+
+    private final ConcurrentMap<ByteArrayWrapper, Spend> spends = new ConcurrentHashMap<>();
+
+    /**
+     * Adds the transaction cost to the sender's spend
+     * if the balance covers them both
+     *
+     * @return false if the balance isn't enough, nothing is reserved then
+     */
+    public boolean reserve(byte[] sender, BigInteger cost, BigInteger balance) {
+        ByteArrayWrapper key = new ByteArrayWrapper(sender);
+        while (true) {
+            Spend spend = spends.get(key);
+            if (spend == null) {
+                Spend created = new Spend();
+                spend = spends.putIfAbsent(key, created);
+                if (spend == null) spend = created;
+            }
+
+            synchronized (spend) {
+                // released concurrently, retry with a fresh one
+                if (spend.released) continue;
+
+                BigInteger total = spend.amount.add(cost);
+                if (total.compareTo(balance) > 0) {
+                    if (spend.count == 0) release(key, spend);
+                    return false;
+                }
+                spend.amount = total;
+                ++spend.count;
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Takes back the cost of a transaction accepted with {@link #reserve}
+     */
+    public void release(byte[] sender, BigInteger cost) {
+        ByteArrayWrapper key = new ByteArrayWrapper(sender);
+        Spend spend = spends.get(key);
+        if (spend == null) return;
+
+        synchronized (spend) {
+            if (spend.released || spend.count == 0) return;
+
+            spend.amount = spend.amount.subtract(cost);
+            if (--spend.count == 0) release(key, spend);
+        }
+    }
+
+    private void release(ByteArrayWrapper key, Spend spend) {
+        spend.released = true;
+        spends.remove(key, spend);
+    }
+
+    /**
+     * @return total cost of the sender's pending transactions
+     */
+    public BigInteger getSpend(byte[] sender) {
+        Spend spend = spends.get(new ByteArrayWrapper(sender));
+        if (spend == null) return ZERO;
+
+        synchronized (spend) {
+            return spend.amount;
+        }
+    }
+
+    /**
+     * @return number of the sender's pending transactions
+     */
+    public int getCount(byte[] sender) {
+        Spend spend = spends.get(new ByteArrayWrapper(sender));
+        if (spend == null) return 0;
+
+        synchronized (spend) {
+            return spend.count;
+        }
+    }
+
+    /**
+     * @return number of senders having pending transactions
+     */
+    public int size() {
+        return spends.size();
+    }
+
+    private static class Spend {
+        BigInteger amount = ZERO;
+        int count = 0;
+        boolean released = false;
+    }
+}
@@ -48,6 +48,24 @@ public interface PendingState extends io.taucoin.facade.PendingState{
 	//PendingState Contains Tx
     boolean pendingStateContains(Transaction tx);
 
+    /**
+     * @return true if the transaction has been received already,
+     *         no matter whether it got into the pool or not
+     */
+    boolean isKnownTransaction(byte[] hash);
+
+    /**
+     * @return the transaction if it is waiting in the wire pool,
+     *         <code>null</code> otherwise
+     */
+    Transaction getWireTransaction(byte[] hash);
+
+    /**
+     * @return the transaction if it is waiting either in the wire pool
+     *         or among the pending state ones, <code>null</code> otherwise
+     */
+    Transaction getTransaction(byte[] hash);
+
     void setBlockchain(Blockchain blockchain);
     /**
      * Fires inner logic related to main sync done event
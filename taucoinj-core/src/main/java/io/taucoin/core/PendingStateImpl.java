@@ -38,13 +38,20 @@ public class PendingStateImpl implements PendingState {
     private boolean isSyncdone = false;
 
     //@Resource
-    private final PriorityQueue<MemoryPoolEntry> wireTransactions = new PriorityQueue<MemoryPoolEntry>(1,new MemoryPoolPolicy());
+    private final MemoryPool wireTransactions = new MemoryPool(CONFIG.txPoolCapacity());
 
     // To filter out the transactions we have already processed
     // transactions could be sent by peers even if they were already included into blocks
     private final Map<ByteArrayWrapper, Object> receivedTxs = new LRUMap<>(500000);
 
-    private final Map<String, BigInteger> expendList = new HashMap<String, BigInteger>(500000);
+    // cost of the wire and pending transactions by sender
+    private final PendingSpendLedger spendLedger = new PendingSpendLedger();
+
+    // wire and pending transactions by the time they get outdated
+    private final TransactionExpiryIndex expiryIndex = new TransactionExpiryIndex();
+
+    // timestamps of the bench blocks the expiry is checked against, by block hash
+    private final Map<ByteArrayWrapper, Long> blockTimes = new LRUMap<>(256);
 
     //@Resource
     private final List<Transaction> pendingStateTransactions = new ArrayList<>();
@@ -80,9 +87,9 @@ public class PendingStateImpl implements PendingState {
      * @return
      */
     public List<Transaction> getWireTransactions() {
-        List<Transaction> list = new ArrayList<Transaction>();
-        for(MemoryPoolEntry entry : wireTransactions){
-            list.add(entry.tx);
+        List<Transaction> list;
+        synchronized (wireTransactions) {
+            list = wireTransactions.getTransactions();
         }
 //        do {
 //            MemoryPoolEntry entry = wireTransactions.peek();
@@ -118,6 +125,7 @@ public class PendingStateImpl implements PendingState {
                 if (isValid(tx)) {
                     newTxs.add(tx);
                 } else {
+                    releaseSpend(tx);
                     logger.info("Non valid TX: {} " + tx.getHash());
                 }
             }
@@ -125,10 +133,23 @@ public class PendingStateImpl implements PendingState {
 
         // tight synchronization here since a lot of duplicate transactions can arrive from many peers
         // and isValid(tx) call is very expensive
-        synchronized (this) {
-            for(Transaction tx : newTxs) {
-                MemoryPoolEntry entry = MemoryPoolEntry.with(tx);
-                wireTransactions.offer(entry);
+        synchronized (wireTransactions) {
+            Iterator<Transaction> it = newTxs.iterator();
+            while (it.hasNext()) {
+                MemoryPoolEntry entry = MemoryPoolEntry.with(it.next());
+                MemoryPoolEntry dropped = wireTransactions.add(entry);
+                if (dropped != null) {
+                    releaseSpend(dropped.tx);
+                    // don't relay what the pool has no room for
+                    if (dropped == entry) {
+                        it.remove();
+                        continue;
+                    }
+                }
+                synchronized (expiryIndex) {
+                    expiryIndex.add(entry.tx);
+                    if (dropped != null) expiryIndex.remove(dropped.tx);
+                }
             }
         }
 
@@ -165,9 +186,9 @@ public class PendingStateImpl implements PendingState {
         }
         long expireTime = ByteUtil.byteArrayToLong(tx.getExpireTime());
         long unlockTime = blockchain.getBestBlock().getNumber() - expireTime;
-        Block benchBlock = null;
+        long benchTime = -1;
         if(unlockTime >= 0) {
-            benchBlock = blockStore.getChainBlockByNumber(unlockTime);
+            benchTime = getChainBlockTime(unlockTime);
         }else{
             /**
              * this behavior is dangerous , whether node should prevent this into wire transaction pool.
@@ -177,7 +198,7 @@ public class PendingStateImpl implements PendingState {
                     ByteUtil.toHexString(tx.getHash()),
                     ByteUtil.byteArrayToLong(tx.getExpireTime()));
         }
-        if(benchBlock != null && !tx.checkTime(benchBlock)) {
+        if(benchTime >= 0 && benchTime > ByteUtil.byteArrayToLong(tx.getTime())) {
             if (logger.isWarnEnabled())
                 logger.warn("Invalid transaction in time");
 			return false;
@@ -190,21 +211,17 @@ public class PendingStateImpl implements PendingState {
     private boolean addNewTxIfNotExist(Transaction tx) {
         ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash());
 
-        //update transaction balance list
-        synchronized (expendList) {
-            String senderTmp= ByteUtil.toHexString(tx.getSender());
-            if (!expendList.containsKey(senderTmp)) {
-                expendList.put(senderTmp, tx.getTotoalCost());
-            } else {
-                expendList.put(senderTmp, expendList.get(senderTmp).add(tx.getTotoalCost()));
-            }
+        synchronized (receivedTxs) {
+            if (receivedTxs.containsKey(hash)) return false;
+        }
 
-            BigInteger senderBalance = getRepository().getBalance(tx.getSender());
-            if (!isCovers(senderBalance, expendList.get(senderTmp))) {
-                if (logger.isWarnEnabled())
-                    logger.warn("No enough balance: Require: {}, Sender's balance: {}", expendList.get(senderTmp), senderBalance);
-                return false;
-            }
+        //update transaction balance list
+        BigInteger senderBalance = getRepository().getBalance(tx.getSender());
+        if (!spendLedger.reserve(tx.getSender(), tx.getTotoalCost(), senderBalance)) {
+            if (logger.isWarnEnabled())
+                logger.warn("No enough balance: Require: {}, Sender's balance: {}",
+                        spendLedger.getSpend(tx.getSender()).add(tx.getTotoalCost()), senderBalance);
+            return false;
         }
 
         /**
@@ -217,22 +234,29 @@ public class PendingStateImpl implements PendingState {
             if (!receivedTxs.containsKey(hash)) {
                 receivedTxs.put(hash, null);
                 return true;
-            } else {
-                return false;
             }
         }
+
+        // the same transaction came from another peer meanwhile
+        releaseSpend(tx);
+        return false;
     }
 
     @Override
     public boolean addPendingTransaction(Transaction tx) {
         if (addNewTxIfNotExist(tx)) {
-            synchronized (this) {
+            synchronized (pendingStateTransactions) {
                 pendingStateTransactions.add(tx);
             }
+            synchronized (expiryIndex) {
+                expiryIndex.add(tx);
+            }
             boolean retval = isValid(tx);
             if(retval){
-                wireTransactions.offer(new MemoryPoolEntry(tx));
-                pendingStateTransactions.remove(tx);
+                offerWire(tx);
+                synchronized (pendingStateTransactions) {
+                    pendingStateTransactions.remove(tx);
+                }
             }
             return retval;
         }
@@ -255,87 +279,101 @@ public class PendingStateImpl implements PendingState {
         //updateState(Block block);
     }
 
-    //Block Number -> Time
+    /**
+     * Drops wire and pending transactions which got outdated,
+     * only the buckets of the expiry index are looked through
+     */
     private void clearOutdated() {
 
-        List<Transaction> outdated = new ArrayList<>();
+        long bestNumber = blockchain.getBestBlock().getNumber();
 
-        //clear wired transactions
-        synchronized (wireTransactions) {
-            for (MemoryPoolEntry entry : wireTransactions) {
-                long expireTime = ByteUtil.byteArrayToLong(entry.tx.getExpireTime());
-                long unlockTime = blockchain.getBestBlock().getNumber() - expireTime;
-                Block benchBlock = null;
-                if(unlockTime >= 0) {
-                    benchBlock = blockStore.getChainBlockByNumber(unlockTime);
-                }else{
-                    /**
-                     * if user set a large expire time , this behavior may be harmful to net
-                     * in the future, more actions will be get to protect net from hack.
-                     */
-                    logger.warn("dangerous behavior expire " +
-                                    "time too long tx:{} expire time:{}",
-                            ByteUtil.toHexString(entry.tx.getHash()),
-                            ByteUtil.byteArrayToLong(entry.tx.getExpireTime()));
-                }
-                if (benchBlock != null && !entry.tx.checkTime(benchBlock) ) {
-                    removeExpendList(entry.tx);
-                    outdated.add(entry.tx);
-                }
+        List<Long> expireTimes;
+        synchronized (expiryIndex) {
+            expireTimes = expiryIndex.getExpireTimes();
+        }
+
+        // block times come from the block store, it isn't read under the index lock
+        Map<Long, Long> benchTimes = new HashMap<>();
+        for (long expireTime : expireTimes) {
+            long benchTime = getChainBlockTime(bestNumber - expireTime);
+            if (benchTime >= 0) benchTimes.put(expireTime, benchTime);
+        }
+
+        List<Transaction> outdated = new ArrayList<>();
+        synchronized (expiryIndex) {
+            for (Map.Entry<Long, Long> benchTime : benchTimes.entrySet()) {
+                outdated.addAll(expiryIndex.pollOutdated(benchTime.getKey(), benchTime.getValue()));
             }
+        }
 
-            if(!outdated.isEmpty()) {
-                for (Transaction tr:
-                        outdated) {
-                    MemoryPoolEntry entry = new MemoryPoolEntry(tr);
-                    wireTransactions.remove(entry);
-                }
+        if (outdated.isEmpty()) return;
+
+        synchronized (wireTransactions) {
+            for (Transaction tx : outdated) {
+                if (wireTransactions.remove(tx.getHash()) != null) releaseSpend(tx);
             }
         }
-        outdated.clear();
 
-        //clear pending transactions
         synchronized (pendingStateTransactions) {
-            for (Transaction tx : pendingStateTransactions) {
-                long expireTime = ByteUtil.byteArrayToLong(tx.getExpireTime());
-                long unlockTime = blockchain.getBestBlock().getNumber() - expireTime;
-                Block benchBlock = null;
-                if (unlockTime >= 0) {
-                    benchBlock = blockStore.getChainBlockByNumber(unlockTime);
-                } else {
-                    logger.warn("dangerous behavior expire " +
-                                    "time too long tx:{} expire time:{}",
-                            ByteUtil.toHexString(tx.getHash()),
-                            ByteUtil.byteArrayToLong(tx.getExpireTime()));
-                }
-                if (benchBlock != null && !tx.checkTime(benchBlock)) {
-                    removeExpendList(tx);
-                    outdated.add(tx);
+            Iterator<Transaction> it = pendingStateTransactions.iterator();
+            Set<Transaction> outdatedSet = new HashSet<>(outdated);
+            while (it.hasNext()) {
+                Transaction tx = it.next();
+                if (outdatedSet.contains(tx)) {
+                    it.remove();
+                    releaseSpend(tx);
                 }
             }
+        }
+
+        logger.info("Outdated transactions removed: {}", outdated.size());
+    }
+
+    /**
+     * @return timestamp of the main chain block or -1 if there is no such one
+     */
+    private long getChainBlockTime(long number) {
+
+        if (number < 0) return -1;
 
-		    if(!outdated.isEmpty())
-                pendingStateTransactions.removeAll(outdated);
+        byte[] hash = blockStore.getBlockHashByNumber(number);
+        if (hash == null) return -1;
+
+        ByteArrayWrapper key = new ByteArrayWrapper(hash);
+        synchronized (blockTimes) {
+            Long time = blockTimes.get(key);
+            if (time != null) return time;
+        }
+
+        byte[] timestamp = blockStore.getBlockTimestamp(hash);
+        if (timestamp == null) return -1;
+
+        long time = ByteUtil.byteArrayToLong(timestamp);
+        synchronized (blockTimes) {
+            blockTimes.put(key, time);
         }
+        return time;
     }
 
     private void clearWire(List<Transaction> txs) {
         synchronized (wireTransactions) {
             for (Transaction tx : txs) {
-                MemoryPoolEntry entry = MemoryPoolEntry.with(tx);
-                if (wireTransactions.contains(entry)){
-                    wireTransactions.remove(entry);
-                }
-                removeExpendList(tx);
+                if (wireTransactions.remove(tx.getHash()) != null) releaseSpend(tx);
             }
 		}
+
+        synchronized (expiryIndex) {
+            for (Transaction tx : txs) {
+                expiryIndex.remove(tx);
+            }
+        }
     }
 
     private void clearPendingState(List<Transaction> txs) {
         synchronized (pendingStateTransactions) {
             for (Transaction tx : txs){
-                if (pendingStateTransactions.contains(tx)){
-                    pendingStateTransactions.remove(tx);
+                if (pendingStateTransactions.remove(tx)){
+                    releaseSpend(tx);
                 }
             }
             /**
@@ -344,15 +382,26 @@ public class PendingStateImpl implements PendingState {
              * wire transaction because it is valid time now.
              * state changes from pending to wire.
              */
-            synchronized (wireTransactions){
-                for(Transaction tx: pendingStateTransactions){
-                    if(isValid(tx)){
-                        MemoryPoolEntry entry = new MemoryPoolEntry(tx);
-                        wireTransactions.offer(entry);
-                        pendingStateTransactions.remove(tx);
-                        logger.info("transaction: {} change from invalid to valid",
-                                ByteUtil.toHexString(entry.tx.getHash()));
-                    }
+            Iterator<Transaction> it = pendingStateTransactions.iterator();
+            while (it.hasNext()) {
+                Transaction tx = it.next();
+                if(isValid(tx)){
+                    offerWire(tx);
+                    it.remove();
+                    logger.info("transaction: {} change from invalid to valid",
+                            ByteUtil.toHexString(tx.getHash()));
+                }
+            }
+        }
+    }
+
+    private void offerWire(Transaction tx) {
+        synchronized (wireTransactions) {
+            MemoryPoolEntry dropped = wireTransactions.add(MemoryPoolEntry.with(tx));
+            if (dropped != null) {
+                releaseSpend(dropped.tx);
+                synchronized (expiryIndex) {
+                    expiryIndex.remove(dropped.tx);
                 }
             }
         }
@@ -370,15 +419,8 @@ public class PendingStateImpl implements PendingState {
      * Transaction execution, which can be seen in transactionExecutor.java
      * 1. validation of sender's balance, subtract
     */
-    private void removeExpendList(Transaction tx) {
-        
-        //update transaction balance list
-        synchronized (expendList) {
-            String senderTmp= ByteUtil.toHexString(tx.getSender());
-            if(expendList.containsKey(senderTmp)) {
-                expendList.put(senderTmp, expendList.get(senderTmp).add(tx.getTotoalCost().negate()));
-            }
-        }
+    private void releaseSpend(Transaction tx) {
+        spendLedger.release(tx.getSender(), tx.getTotoalCost());
     }
 
     public void setBlockchain(Blockchain blockchain) {
@@ -386,9 +428,41 @@ public class PendingStateImpl implements PendingState {
     }
 
     public boolean pendingStateContains(Transaction tx) {
-        if (pendingStateTransactions.contains(tx)||wireTransactions.contains(tx))
-            return true;
-		return false;
+        synchronized (wireTransactions) {
+            if (wireTransactions.contains(tx.getHash()))
+                return true;
+        }
+        synchronized (pendingStateTransactions) {
+            return pendingStateTransactions.contains(tx);
+        }
+    }
+
+    @Override
+    public boolean isKnownTransaction(byte[] hash) {
+        synchronized (receivedTxs) {
+            return receivedTxs.containsKey(new ByteArrayWrapper(hash));
+        }
+    }
+
+    @Override
+    public Transaction getWireTransaction(byte[] hash) {
+        synchronized (wireTransactions) {
+            MemoryPoolEntry entry = wireTransactions.get(hash);
+            return entry == null ? null : entry.tx;
+        }
+    }
+
+    @Override
+    public Transaction getTransaction(byte[] hash) {
+        Transaction tx = getWireTransaction(hash);
+        if (tx != null) return tx;
+
+        synchronized (pendingStateTransactions) {
+            for (Transaction pending : pendingStateTransactions) {
+                if (Arrays.equals(pending.getHash(), hash)) return pending;
+            }
+        }
+        return null;
     }
 
     @Override
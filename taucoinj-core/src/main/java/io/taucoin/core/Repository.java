@@ -5,6 +5,7 @@ import io.taucoin.db.ByteArrayWrapper;
 import java.math.BigInteger;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
 
 /**
@@ -88,6 +89,18 @@ public interface Repository {
      */
     BigInteger addBalance(byte[] addr, BigInteger value);
 
+    /**
+     * Retrieve entries of the account transaction history
+     * sent within the time range, oldest first
+     *
+     * @param addr of the account
+     * @param fromTime lower bound of the transaction time, inclusive
+     * @param toTime upper bound of the transaction time, exclusive
+     * @param limit max number of the entries to return
+     * @return the entries, empty if there are none
+     */
+    List<TransactionInfo> getTransactionHistory(byte[] addr, long fromTime, long toTime, int limit);
+
     /**
      * Save a snapshot and start tracking future changes
      *
@@ -103,6 +116,20 @@ public interface Repository {
      */
     void commit();
 
+    /**
+     * Store all the temporary changes along with the hash of the block
+     * they were made by, both go to the database in one write
+     *
+     * @param blockHash the block the committed state belongs to
+     */
+    void commit(byte[] blockHash);
+
+    /**
+     * @return hash of the block the stored state belongs to,
+     *         <code>null</code> if none was recorded yet
+     */
+    byte[] getBlockHash();
+
     /**
      * Undo all the changes made so far
      * to a snapshot of the repository
@@ -128,5 +155,7 @@ public interface Repository {
 
     void updateBatch(HashMap<ByteArrayWrapper, AccountState> accountStates);
 
+    void updateBatch(HashMap<ByteArrayWrapper, AccountState> accountStates, byte[] blockHash);
+
     void loadAccount(byte[] addr, HashMap<ByteArrayWrapper, AccountState> cacheAccounts);
 }
@@ -0,0 +1,209 @@
+package io.taucoin.core;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.spongycastle.util.encoders.Hex;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.RecursiveTask;
+
+import static io.taucoin.config.SystemProperties.CONFIG;
+
+/**
+ * Recovers forger keys and transaction senders ahead of the state transition.
+ *
+ * Public key recovery is the most expensive part of a block import and
+ * doesn't depend on the state, so it runs on a bounded fork/join pool
+ * and fills the memoized keys of {@link Block} and {@link Transaction}.
+ * The sequential transaction loop of the blockchain then only has to do
+ * the balance arithmetic.
+ *
+ * @author taucoin core
+ * @since 08.07.2019
+ */
+public class SignatureVerifier {
+
+    private static final Logger logger = LoggerFactory.getLogger("blockchain");
+
+    // transactions verified by one task without further splitting
+    private static final int BATCH_SIZE = 16;
+
+    private static final ForkJoinPool pool = new ForkJoinPool(threads(),
+            new ForkJoinPool.ForkJoinWorkerThreadFactory() {
+                public ForkJoinWorkerThread newThread(ForkJoinPool pool) {
+                    ForkJoinWorkerThread t = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+                    t.setName("SignatureVerifyThread-" + t.getPoolIndex());
+                    return t;
+                }
+            }, null, false);
+
+    private SignatureVerifier() {
+    }
+
+    /**
+     * Verifies the forger signature and all the transaction signatures
+     * of the block, blocks the caller until done
+     *
+     * @return false if any of the signatures is broken
+     */
+    public static boolean verify(Block block) {
+        if (block.getTransactionsList().size() <= BATCH_SIZE) {
+            return verifyInline(block);
+        }
+        return pool.invoke(new BlockTask(block));
+    }
+
+    /**
+     * Starts verification of the block in background,
+     * used to verify queued blocks while previous ones are being imported
+     *
+     * @return task which result is the same as of {@link #verify(Block)}
+     */
+    public static ForkJoinTask<Boolean> submit(Block block) {
+        return pool.submit(new BlockTask(block));
+    }
+
+    /**
+     * Recovers senders of loose transactions, used to verify transactions
+     * received from the network in batches, blocks the caller until done
+     *
+     * @return transactions which signatures are valid, in the given order
+     */
+    public static List<Transaction> filterVerified(List<Transaction> txs) {
+        boolean[] valid = new boolean[txs.size()];
+        if (txs.size() <= BATCH_SIZE) {
+            markRange(txs, valid, 0, txs.size());
+        } else {
+            pool.invoke(new MarkTask(txs, valid, 0, txs.size()));
+        }
+
+        List<Transaction> verified = new ArrayList<>(txs.size());
+        for (int i = 0; i < valid.length; ++i) {
+            if (valid[i]) verified.add(txs.get(i));
+        }
+        return verified;
+    }
+
+    private static boolean verifyInline(Block block) {
+        try {
+            List<Transaction> txs = block.getTransactionsList();
+            return block.getForgerKey() != null && verifyRange(txs, 0, txs.size());
+        } catch (Exception e) {
+            logger.error("Failed to verify signatures of block {}", block.getShortHash(), e);
+            return false;
+        }
+    }
+
+    private static boolean verifyRange(List<Transaction> txs, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            Transaction tx = txs.get(i);
+            if (tx.getSignature() == null || tx.getSender() == null) {
+                logger.error("Transaction [{}] has invalid signature", Hex.toHexString(tx.getHash()));
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static void markRange(List<Transaction> txs, boolean[] valid, int from, int to) {
+        for (int i = from; i < to; ++i) {
+            Transaction tx = txs.get(i);
+            try {
+                valid[i] = tx.getSignature() != null && tx.getSender() != null;
+            } catch (Exception e) {
+                logger.debug("Transaction [{}] has invalid signature", Hex.toHexString(tx.getHash()), e);
+            }
+        }
+    }
+
+    private static int threads() {
+        int threads = CONFIG.blockVerifyThreads();
+        return threads > 0 ? threads : Runtime.getRuntime().availableProcessors();
+    }
+
+    private static class BlockTask extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final Block block;
+
+        BlockTask(Block block) {
+            this.block = block;
+        }
+
+        @Override
+        protected Boolean compute() {
+            try {
+                List<Transaction> txs = block.getTransactionsList();
+                TransactionsTask txTask = new TransactionsTask(txs, 0, txs.size());
+                txTask.fork();
+                boolean forgerValid = block.getForgerKey() != null;
+                return txTask.join() && forgerValid;
+            } catch (Exception e) {
+                logger.error("Failed to verify signatures of block {}", block.getShortHash(), e);
+                return false;
+            }
+        }
+    }
+
+    private static class TransactionsTask extends RecursiveTask<Boolean> {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Transaction> txs;
+        private final int from;
+        private final int to;
+
+        TransactionsTask(List<Transaction> txs, int from, int to) {
+            this.txs = txs;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Boolean compute() {
+            if (to - from <= BATCH_SIZE) {
+                return verifyRange(txs, from, to);
+            }
+
+            int middle = (from + to) >>> 1;
+            TransactionsTask left = new TransactionsTask(txs, from, middle);
+            left.fork();
+            boolean rightValid = new TransactionsTask(txs, middle, to).compute();
+            return left.join() && rightValid;
+        }
+    }
+
+    private static class MarkTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private final List<Transaction> txs;
+        private final boolean[] valid;
+        private final int from;
+        private final int to;
+
+        MarkTask(List<Transaction> txs, boolean[] valid, int from, int to) {
+            this.txs = txs;
+            this.valid = valid;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute() {
+            if (to - from <= BATCH_SIZE) {
+                markRange(txs, valid, from, to);
+                return;
+            }
+
+            int middle = (from + to) >>> 1;
+            invokeAll(new MarkTask(txs, valid, from, middle), new MarkTask(txs, valid, middle, to));
+        }
+    }
+}
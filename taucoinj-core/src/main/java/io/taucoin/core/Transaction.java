@@ -62,8 +62,10 @@ public class Transaction {
     private ECDSASignature signature = null;
     
     private byte[] sendAddress;
-    
+
+    /* Memoized hashes, sign() resets the ones covering the signature */
     private byte[] hash;
+    private byte[] rawHash;
 
     public static final int TTIME = 144;
     public static final int HASH_LENGTH = 32;
@@ -187,7 +189,6 @@ public class Transaction {
             logger.debug("RLP encoded tx is not signed!");
         }
         this.parsed = true;
-        this.hash = getHash();
     }
 
     public boolean validate() {
@@ -213,14 +214,20 @@ public class Transaction {
     //entire transaction hash code
     public byte[] getHash() {
         if (!parsed) rlpParse();
-        byte[] plainMsg = this.getEncoded();
-        return HashUtil.sha3(plainMsg);
+        if (hash == null) {
+            byte[] plainMsg = this.getEncoded();
+            hash = HashUtil.sha3(plainMsg);
+        }
+        return hash;
     }
     // transaction except to signature
     public byte[] getRawHash() {
         if (!parsed) rlpParse();
-        byte[] plainMsg = this.getEncodedRaw();
-        return HashUtil.sha3(plainMsg);
+        if (rawHash == null) {
+            byte[] plainMsg = this.getEncodedRaw();
+            rawHash = HashUtil.sha3(plainMsg);
+        }
+        return rawHash;
     }
 
     public byte[] getTime() {
@@ -274,7 +281,7 @@ public class Transaction {
     public byte[] getSender() {
         try {
             if (sendAddress == null) {
-                ECKey key = ECKey.signatureToKey(getRawHash(), getSignature().toBase64());
+                ECKey key = ECKey.signatureToKey(getRawHash(), getSignature());
                 sendAddress = key.getAddress();
             }
             return sendAddress;
@@ -289,6 +296,8 @@ public class Transaction {
         ECKey key = ECKey.fromPrivate(privKeyBytes).decompress();
         this.signature = key.sign(hash);
         this.rlpEncoded = null;
+        this.hash = null;
+        this.sendAddress = null;
     }
 
     @Override
@@ -356,31 +365,27 @@ public class Transaction {
         this.rlpEncoded = RLP.encodeList(version, option, timeStamp,
                 toAddress, amount, fee, expireTime, v, r, s);
 
-        this.hash = this.getHash();
-
         return rlpEncoded;
     }
 
     @Override
     public int hashCode() {
 
+        // the hash is uniformly distributed, its first bytes are enough
         byte[] hash = this.getHash();
-        int hashCode = 0;
-
-        for (int i = 0; i < hash.length; ++i) {
-            hashCode += hash[i] * i;
-        }
 
-        return hashCode;
+        return ((hash[0] & 0xFF) << 24) | ((hash[1] & 0xFF) << 16)
+                | ((hash[2] & 0xFF) << 8) | (hash[3] & 0xFF);
     }
 
     @Override
     public boolean equals(Object obj) {
 
+        if (this == obj) return true;
         if (!(obj instanceof Transaction)) return false;
         Transaction tx = (Transaction) obj;
 
-        return tx.hashCode() == this.hashCode();
+        return Arrays.equals(tx.getHash(), this.getHash());
     }
 
     public static Transaction create(BigInteger version,BigInteger option,BigInteger timeStamp,String to, BigInteger amount, BigInteger fee){
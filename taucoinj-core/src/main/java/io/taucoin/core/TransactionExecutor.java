@@ -6,9 +6,6 @@ import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
-import java.util.Collections;
-import java.util.List;
-import java.util.Set;
 
 import static io.taucoin.util.BIUtil.*;
 
@@ -57,6 +54,11 @@ public class TransactionExecutor {
         /**
          * node need to check whether this transaction has been recorded in block.
          * a honest node need to avoid transactions duplicated in block chain.
+         *
+         * The check used to compare hashes by reference, it never fired and the
+         * chain has been accepted that way. Rejecting duplicates would be a new
+         * consensus rule, it has to come with the block height it applies from,
+         * so the sender history is not consulted here for now.
          */
         AccountState accountState = track.getAccountState(tx.getSender());
         if(accountState == null){
@@ -64,20 +66,6 @@ public class TransactionExecutor {
                 logger.error("in valid account ,address is: {}", ByteUtil.toHexString(tx.getSender()));
             return false;
         }
-        long tranTime = ByteUtil.byteArrayToLong(tx.getTime());
-        Set<Long> txHistory = accountState.getTranHistory().keySet();
-        if(!txHistory.isEmpty()) {
-            long txTime = Collections.max(txHistory);
-            /**
-             * System should be concurrency high rather than 1 transaction per second.
-             */
-            if (tranTime <= txTime) {
-                if (tx.getHash() == accountState.getTranHistory().get(tranTime)) {
-                    logger.error("duplicate transaction ,tx is: {}", ByteUtil.toHexString(tx.getHash()));
-                    return false;
-                }
-            }
-        }
         BigInteger totalCost = toBI(tx.getAmount()).add(toBI(tx.transactionCost()));
         BigInteger senderBalance = track.getBalance(tx.getSender());
 
@@ -114,14 +102,15 @@ public class TransactionExecutor {
         logger.info("Pay fees to miner: [{}], feesEarned: [{}]", Hex.toHexString(coinbase), basicTxFee);
 
         AccountState accountState = track.getAccountState(tx.getSender());
-        if(accountState.getTranHistory().size() > MaxHistoryCount){
-            long txTime = Collections.min(accountState.getTranHistory().keySet());
-            accountState.getTranHistory().remove(txTime);
-            long txTimeTemp = ByteUtil.byteArrayToLong(tx.getTime());
-            accountState.getTranHistory().put(txTimeTemp,tx.getHash());
-        }else{
-            long txTime = ByteUtil.byteArrayToLong(tx.getTime());
-            accountState.getTranHistory().put(txTime,tx.getHash());
+        long txTime = ByteUtil.byteArrayToLong(tx.getTime());
+        accountState.addTransactionHistory(txTime, tx.getHash());
+
+        // the oldest entries slide out of the history
+        long excess = accountState.getHistorySize() - MaxHistoryCount;
+        if (excess > 0) {
+            for (TransactionInfo info : track.getTransactionHistory(tx.getSender(), 0, Long.MAX_VALUE, (int) excess)) {
+                accountState.removeTransactionHistory(info);
+            }
         }
     }
 
@@ -0,0 +1,98 @@
+package io.taucoin.core;
+
+import io.taucoin.util.ByteUtil;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+/**
+ * Pending transactions bucketed by their expire time (in blocks) and
+ * sorted by creation time inside a bucket.
+ *
+ * A transaction is outdated once the main chain block which is expire time
+ * blocks below the best one is younger than the transaction, so every bucket
+ * needs one block timestamp to find all of its outdated transactions. <br>
+ * The index isn't thread safe, callers synchronize on it.
+ *
+ * @author taucoin core
+ * @since 11.07.2019
+ */
+public class TransactionExpiryIndex {
+
+    private final Map<Long, TreeMap<Long, Set<Transaction>>> buckets = new HashMap<>();
+    private int size = 0;
+
+    public void add(Transaction tx) {
+        long expireTime = ByteUtil.byteArrayToLong(tx.getExpireTime());
+        long txTime = ByteUtil.byteArrayToLong(tx.getTime());
+
+        TreeMap<Long, Set<Transaction>> bucket = buckets.get(expireTime);
+        if (bucket == null) {
+            bucket = new TreeMap<>();
+            buckets.put(expireTime, bucket);
+        }
+
+        Set<Transaction> txs = bucket.get(txTime);
+        if (txs == null) {
+            txs = new HashSet<>();
+            bucket.put(txTime, txs);
+        }
+        if (txs.add(tx)) ++size;
+    }
+
+    public void remove(Transaction tx) {
+        long expireTime = ByteUtil.byteArrayToLong(tx.getExpireTime());
+        long txTime = ByteUtil.byteArrayToLong(tx.getTime());
+
+        TreeMap<Long, Set<Transaction>> bucket = buckets.get(expireTime);
+        if (bucket == null) return;
+
+        Set<Transaction> txs = bucket.get(txTime);
+        if (txs == null || !txs.remove(tx)) return;
+        --size;
+
+        if (txs.isEmpty()) bucket.remove(txTime);
+        if (bucket.isEmpty()) buckets.remove(expireTime);
+    }
+
+    /**
+     * @return distinct expire times of the indexed transactions
+     */
+    public List<Long> getExpireTimes() {
+        return new ArrayList<>(buckets.keySet());
+    }
+
+    /**
+     * Removes transactions of the bucket created before the given time
+     *
+     * @param expireTime the bucket
+     * @param benchTime timestamp of the block expire time blocks below the best one
+     * @return removed transactions
+     */
+    public List<Transaction> pollOutdated(long expireTime, long benchTime) {
+        List<Transaction> outdated = new ArrayList<>();
+
+        TreeMap<Long, Set<Transaction>> bucket = buckets.get(expireTime);
+        if (bucket == null) return outdated;
+
+        SortedMap<Long, Set<Transaction>> head = bucket.headMap(benchTime);
+        for (Set<Transaction> txs : head.values()) {
+            outdated.addAll(txs);
+        }
+        head.clear();
+        size -= outdated.size();
+
+        if (bucket.isEmpty()) buckets.remove(expireTime);
+        return outdated;
+    }
+
+    public int size() {
+        return size;
+    }
+}
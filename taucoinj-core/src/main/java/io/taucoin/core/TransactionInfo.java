@@ -29,13 +29,24 @@ public class TransactionInfo implements Serializable {
     }
 
     public byte[] gettrHashcode() {
+         if (!parsed) rlpParse();
          return trHash;
     }
          
     public long gettrTime() {
+         if (!parsed) rlpParse();
          return trTime;
     }
          
+    /**
+     * @return time followed by the hash, keys of an account
+     *         history sort by the transaction time
+     */
+    public byte[] getKey() {
+         if (!parsed) rlpParse();
+         return ByteUtil.merge(ByteUtil.longToBytes(trTime), trHash);
+    }
+
     public void settrHashcode(byte[] trHashcode){
          this.trHash = trHashcode;
     }
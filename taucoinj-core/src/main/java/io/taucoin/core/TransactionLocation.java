@@ -0,0 +1,51 @@
+package io.taucoin.core;
+
+import io.taucoin.util.ByteUtil;
+import io.taucoin.util.RLP;
+import io.taucoin.util.RLPList;
+
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * Position of a transaction on the main chain:
+ * the hash of the including block and the index
+ * of the transaction inside its body.
+ *
+ * @author taucoin core
+ * @since 02.07.2019
+ */
+public class TransactionLocation {
+
+    private byte[] blockHash;
+    private int index;
+
+    public TransactionLocation(byte[] blockHash, int index) {
+        this.blockHash = blockHash;
+        this.index = index;
+    }
+
+    public TransactionLocation(byte[] rlpEncoded) {
+        RLPList params = RLP.decode2(rlpEncoded);
+        RLPList location = (RLPList) params.get(0);
+
+        this.blockHash = location.get(0).getRLPData();
+        this.index = ByteUtil.byteArrayToInt(location.get(1).getRLPData());
+    }
+
+    public byte[] getBlockHash() {
+        return blockHash;
+    }
+
+    public int getIndex() {
+        return index;
+    }
+
+    public byte[] getEncoded() {
+        return RLP.encodeList(RLP.encodeElement(blockHash), RLP.encodeInt(index));
+    }
+
+    @Override
+    public String toString() {
+        return "TransactionLocation{blockHash=" + Hex.toHexString(blockHash) + ", index=" + index + "}";
+    }
+}
@@ -0,0 +1,164 @@
+package io.taucoin.core;
+
+import io.taucoin.db.ByteArrayWrapper;
+import io.taucoin.util.ByteUtil;
+import io.taucoin.util.RLP;
+import io.taucoin.util.RLPElement;
+import io.taucoin.util.RLPList;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import static io.taucoin.util.ByteUtil.wrap;
+
+/**
+ * State of the accounts touched by a block as it was before the block
+ * was applied, replaying it on top of the post block state undoes the
+ * block without re-executing its transactions.
+ *
+ * For every sender the journal also keeps the history entries the block
+ * appends and the oldest ones which may slide out of the history while
+ * the block is applied.
+ *
+ * @author taucoin core
+ * @since 09.07.2019
+ */
+public class UndoJournal {
+
+    private final List<Entry> entries;
+
+    private UndoJournal(List<Entry> entries) {
+        this.entries = entries;
+    }
+
+    public UndoJournal(byte[] rlpEncoded) {
+        RLPList items = (RLPList) RLP.decode2(rlpEncoded).get(0);
+
+        this.entries = new ArrayList<>(items.size());
+        for (RLPElement item : items) {
+            RLPList entry = (RLPList) item;
+
+            byte[] address = entry.get(0).getRLPData();
+            byte[] existed = entry.get(1).getRLPData();
+            byte[] state = entry.get(2).getRLPData();
+
+            boolean exists = existed != null && existed[0] == 1;
+            this.entries.add(new Entry(address == null ? ByteUtil.EMPTY_BYTE_ARRAY : address,
+                    exists ? new AccountState(state) : null,
+                    decodeHistory((RLPList) entry.get(3)), decodeHistory((RLPList) entry.get(4))));
+        }
+    }
+
+    private static List<TransactionInfo> decodeHistory(RLPList items) {
+        List<TransactionInfo> history = new ArrayList<>(items.size());
+        for (RLPElement item : items) {
+            history.add(new TransactionInfo(item.getRLPData()));
+        }
+        return history;
+    }
+
+    private static byte[] encodeHistory(List<TransactionInfo> history) {
+        byte[][] encoded = new byte[history.size()][];
+        for (int i = 0; i < history.size(); ++i) {
+            encoded[i] = history.get(i).getEncoded();
+        }
+        return RLP.encodeList(encoded);
+    }
+
+    /**
+     * Records the accounts the block is going to touch,
+     * must be called before any of its transactions is executed
+     *
+     * @param repo state the block is applied to
+     * @param coinbase address of the block forger
+     */
+    public static UndoJournal record(Block block, Repository repo, byte[] coinbase) {
+
+        // sent transactions by account, each of them may drop one history entry
+        Map<ByteArrayWrapper, List<TransactionInfo>> accounts = new LinkedHashMap<>();
+        for (Transaction tx : block.getTransactionsList()) {
+            ByteArrayWrapper sender = wrap(tx.getSender());
+            List<TransactionInfo> sent = accounts.get(sender);
+            if (sent == null) {
+                sent = new ArrayList<>();
+                accounts.put(sender, sent);
+            }
+            sent.add(new TransactionInfo(ByteUtil.byteArrayToLong(tx.getTime()), tx.getHash()));
+
+            ByteArrayWrapper receiver = wrap(tx.getReceiveAddress());
+            if (!accounts.containsKey(receiver)) accounts.put(receiver, new ArrayList<TransactionInfo>());
+        }
+        if (!accounts.containsKey(wrap(coinbase))) accounts.put(wrap(coinbase), new ArrayList<TransactionInfo>());
+
+        List<Entry> entries = new ArrayList<>(accounts.size());
+        for (Map.Entry<ByteArrayWrapper, List<TransactionInfo>> account : accounts.entrySet()) {
+            byte[] address = account.getKey().getData();
+            List<TransactionInfo> sent = account.getValue();
+
+            if (!repo.isExist(address)) {
+                entries.add(new Entry(address, null, sent, new ArrayList<TransactionInfo>()));
+                continue;
+            }
+
+            AccountState state = repo.getAccountState(address).clone();
+            List<TransactionInfo> oldest = sent.isEmpty() ? new ArrayList<TransactionInfo>()
+                    : repo.getTransactionHistory(address, 0, Long.MAX_VALUE, sent.size());
+
+            entries.add(new Entry(address, state, sent, oldest));
+        }
+
+        return new UndoJournal(entries);
+    }
+
+    /**
+     * Puts the recorded accounts back, the repository
+     * must hold the state right after the block
+     */
+    public void undo(Repository repo) {
+        for (Entry entry : entries) {
+            AccountState current = repo.getAccountState(entry.address);
+            if (current == null)
+                current = repo.createAccount(entry.address);
+
+            if (entry.state == null) {
+                current.restore(new AccountState(), entry.sent, entry.oldest);
+                current.setDeleted(true);
+            } else {
+                current.restore(entry.state, entry.sent, entry.oldest);
+            }
+        }
+    }
+
+    public byte[] getEncoded() {
+        byte[][] encoded = new byte[entries.size()][];
+        for (int i = 0; i < entries.size(); ++i) {
+            Entry entry = entries.get(i);
+
+            encoded[i] = RLP.encodeList(RLP.encodeElement(entry.address),
+                    RLP.encodeByte((byte) (entry.state != null ? 1 : 0)),
+                    RLP.encodeElement(entry.state != null ? entry.state.getEncoded() : ByteUtil.EMPTY_BYTE_ARRAY),
+                    encodeHistory(entry.sent),
+                    encodeHistory(entry.oldest));
+        }
+        return RLP.encodeList(encoded);
+    }
+
+    private static class Entry {
+        final byte[] address;
+        // null if the account didn't exist
+        final AccountState state;
+        // history entries appended by the block
+        final List<TransactionInfo> sent;
+        // oldest history entries before the block
+        final List<TransactionInfo> oldest;
+
+        Entry(byte[] address, AccountState state, List<TransactionInfo> sent, List<TransactionInfo> oldest) {
+            this.address = address;
+            this.state = state;
+            this.sent = sent;
+            this.oldest = oldest;
+        }
+    }
+}
@@ -593,9 +593,27 @@ public class ECKey implements Serializable {
         //                  0x1D = second key with even y, 0x1E = second key with odd y
         if (header < 27 || header > 34)
             throw new SignatureException("Header byte out of range: " + header);
-        BigInteger r = new BigInteger(1, Arrays.copyOfRange(signatureEncoded, 1, 33));
-        BigInteger s = new BigInteger(1, Arrays.copyOfRange(signatureEncoded, 33, 65));
-        ECDSASignature sig = new ECDSASignature(r, s);
+        ECDSASignature sig = ECDSASignature.fromComponents(
+                Arrays.copyOfRange(signatureEncoded, 1, 33),
+                Arrays.copyOfRange(signatureEncoded, 33, 65),
+                signatureEncoded[0]);
+        return signatureToKey(messageHash, sig);
+    }
+
+    /**
+     * Same as {@link #signatureToKey(byte[], String)} for an already decoded signature,
+     * the header byte is taken from <code>sig.v</code>
+     *
+     * @param messageHash the hash which was signed
+     * @param sig the signature with the recovery header set
+     *
+     * @return -
+     * @throws SignatureException If the public key could not be recovered or if there was a signature format error.
+     */
+    public static ECKey signatureToKey(byte[] messageHash, ECDSASignature sig) throws SignatureException {
+        int header = sig.v & 0xFF;
+        if (header < 27 || header > 34)
+            throw new SignatureException("Header byte out of range: " + header);
         boolean compressed = false;
         if (header >= 31) {
             compressed = true;
@@ -3,16 +3,16 @@ package io.taucoin.datasource;
 import io.taucoin.db.ByteArrayWrapper;
 import org.iq80.leveldb.DBException;
 
-import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 import static io.taucoin.util.ByteUtil.wrap;
 
 public class HashMapDB implements KeyValueDataSource {
 
-    Map<ByteArrayWrapper, byte[]> storage = new HashMap<>();
+    Map<ByteArrayWrapper, byte[]> storage = new ConcurrentHashMap<>();
 
 
     @Override
@@ -29,6 +29,9 @@ public class HashMapDB implements KeyValueDataSource {
 
     @Override
     public byte[] put(byte[] key, byte[] value) throws DBException {
+        if (value == null) {
+            return storage.remove(wrap(key));
+        }
         return storage.put(wrap(key), value);
     }
 
@@ -70,10 +73,25 @@ public class HashMapDB implements KeyValueDataSource {
         return keys;
     }
 
+    @Override
+    public KeyValueIterator iterator(byte[] from, byte[] to, boolean reverse) {
+        return new SortedKeysIterator(keys(), from, to, reverse) {
+            @Override
+            protected byte[] getValue(byte[] key) {
+                return get(key);
+            }
+        };
+    }
+
     @Override
     public void updateBatch(Map<byte[], byte[]> rows) {
         for (byte[] key :  rows.keySet()){
-            storage.put(wrap(key), rows.get(key));
+            byte[] value = rows.get(key);
+            if (value == null) {
+                storage.remove(wrap(key));
+            } else {
+                storage.put(wrap(key), value);
+            }
         }
     }
 
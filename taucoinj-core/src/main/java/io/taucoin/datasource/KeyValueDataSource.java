@@ -15,7 +15,30 @@ public interface KeyValueDataSource extends DataSource {
 
     void delete(byte[] key);
 
+    /**
+     * Loads all the keys into memory,
+     * consider {@link #iterator} for large data sources
+     */
     Set<byte[]> keys();
 
+    /**
+     * Iterates over the pairs with <code>from <= key < to</code> in the
+     * unsigned lexicographical order of keys, the returned iterator must be closed.
+     * Use {@link io.taucoin.util.ByteUtil#prefixUpperBound} as <code>to</code>
+     * for a prefix scan.
+     *
+     * @param from lower bound, inclusive, <code>null</code> to start from the very first key
+     * @param to upper bound, exclusive, <code>null</code> for no bound
+     * @param reverse iterate from the upper bound down to the lower one
+     */
+    KeyValueIterator iterator(byte[] from, byte[] to, boolean reverse);
+
+    /**
+     * Writes all the rows as a single atomic update where
+     * the underlying storage allows it.
+     *
+     * @param rows key/value pairs to store, a <code>null</code> value
+     *             deletes the key
+     */
     void updateBatch(Map<byte[], byte[]> rows);
 }
@@ -0,0 +1,21 @@
+package io.taucoin.datasource;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.Map;
+
+/**
+ * Iterator over the key-value pairs of a {@link KeyValueDataSource}
+ * in the unsigned lexicographical order of keys (or the reverse one).
+ *
+ * Holds underlying resources until closed,
+ * thus should be used within try-with-resources.
+ *
+ * @author taucoin core
+ * @since 01.07.2019
+ */
+public interface KeyValueIterator extends Iterator<Map.Entry<byte[], byte[]>>, Closeable {
+
+    @Override
+    void close();
+}
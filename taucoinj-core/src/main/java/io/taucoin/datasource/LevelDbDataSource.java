@@ -1,5 +1,6 @@
 package io.taucoin.datasource;
 
+import com.typesafe.config.Config;
 import org.iq80.leveldb.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,10 +12,12 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.util.HashSet;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import static java.lang.System.getProperty;
 import static io.taucoin.config.SystemProperties.CONFIG;
+import static io.taucoin.util.FastByteComparisons.compareTo;
 import static org.fusesource.leveldbjni.JniDBFactory.factory;
 
 /**
@@ -24,6 +27,7 @@ import static org.fusesource.leveldbjni.JniDBFactory.factory;
 public class LevelDbDataSource implements KeyValueDataSource {
 
     private static final Logger logger = LoggerFactory.getLogger("db");
+    private static final Logger gLogger = LoggerFactory.getLogger("general");
 
     String name;
     DB db;
@@ -42,14 +46,13 @@ public class LevelDbDataSource implements KeyValueDataSource {
 
         if (name == null) throw new NullPointerException("no name set to the db");
 
-        Options options = new Options();
+        Options options = createOptions(CONFIG.levelDbProfile(name));
         options.createIfMissing(true);
-        options.compressionType(CompressionType.NONE);
-        options.blockSize(10 * 1024 * 1024);
-        options.writeBufferSize(10 * 1024 * 1024);
-        options.cacheSize(0);
-        options.paranoidChecks(true);
-        options.verifyChecksums(true);
+
+        gLogger.info("LevelDB '{}': blockSize: {}, cacheSize: {}, writeBufferSize: {}, maxOpenFiles: {}, " +
+                        "compression: {}, paranoidChecks: {}, verifyChecksums: {}",
+                name, options.blockSize(), options.cacheSize(), options.writeBufferSize(), options.maxOpenFiles(),
+                options.compressionType(), options.paranoidChecks(), options.verifyChecksums());
 
         try {
             logger.debug("Opening database");
@@ -66,6 +69,19 @@ public class LevelDbDataSource implements KeyValueDataSource {
         }
     }
 
+    private static Options createOptions(Config profile) {
+        Options options = new Options();
+        options.blockSize((int) profile.getBytes("blockSize").longValue());
+        options.cacheSize(profile.getBytes("cacheSize"));
+        options.writeBufferSize((int) profile.getBytes("writeBufferSize").longValue());
+        options.maxOpenFiles(profile.getInt("maxOpenFiles"));
+        options.compressionType("snappy".equalsIgnoreCase(profile.getString("compression"))
+                ? CompressionType.SNAPPY : CompressionType.NONE);
+        options.paranoidChecks(profile.getBoolean("paranoidChecks"));
+        options.verifyChecksums(profile.getBoolean("verifyChecksums"));
+        return options;
+    }
+
     @Override
     public boolean isAlive() {
         return alive;
@@ -124,10 +140,19 @@ public class LevelDbDataSource implements KeyValueDataSource {
         }
     }
 
+    @Override
+    public KeyValueIterator iterator(byte[] from, byte[] to, boolean reverse) {
+        return new LevelDbIterator(db.iterator(), from, to, reverse);
+    }
+
     private void updateBatchInternal(Map<byte[], byte[]> rows) throws IOException {
         try (WriteBatch batch = db.createWriteBatch()) {
             for (Map.Entry<byte[], byte[]> entry : rows.entrySet()) {
-                batch.put(entry.getKey(), entry.getValue());
+                if (entry.getValue() == null) {
+                    batch.delete(entry.getKey());
+                } else {
+                    batch.put(entry.getKey(), entry.getValue());
+                }
             }
             db.write(batch);
         }
@@ -160,4 +185,86 @@ public class LevelDbDataSource implements KeyValueDataSource {
             logger.error("Failed to find the db file on the close: {} ", name);
         }
     }
+
+    /**
+     * Streams the range straight from the LevelDB iterator,
+     * the entry to be returned next is the one the iterator points to
+     */
+    private static class LevelDbIterator implements KeyValueIterator {
+
+        private final DBIterator iterator;
+        private final byte[] from;
+        private final byte[] to;
+        private final boolean reverse;
+
+        private boolean exhausted = false;
+
+        LevelDbIterator(DBIterator iterator, byte[] from, byte[] to, boolean reverse) {
+            this.iterator = iterator;
+            this.from = from;
+            this.to = to;
+            this.reverse = reverse;
+
+            if (!reverse) {
+                if (from == null) {
+                    iterator.seekToFirst();
+                } else {
+                    iterator.seek(from);
+                }
+            } else if (to == null) {
+                iterator.seekToLast();
+            } else {
+                iterator.seek(to);
+                if (!iterator.hasNext()) {
+                    // all the keys are below the bound
+                    iterator.seekToLast();
+                } else {
+                    stepBack();
+                }
+            }
+        }
+
+        @Override
+        public boolean hasNext() {
+            if (exhausted || !iterator.hasNext()) return false;
+
+            byte[] key = iterator.peekNext().getKey();
+            return reverse
+                    ? from == null || compareTo(key, 0, key.length, from, 0, from.length) >= 0
+                    : to == null || compareTo(key, 0, key.length, to, 0, to.length) < 0;
+        }
+
+        @Override
+        public Map.Entry<byte[], byte[]> next() {
+            if (!hasNext()) throw new NoSuchElementException();
+
+            if (!reverse) return iterator.next();
+
+            Map.Entry<byte[], byte[]> entry = iterator.peekNext();
+            stepBack();
+            return entry;
+        }
+
+        private void stepBack() {
+            if (iterator.hasPrev()) {
+                iterator.prev();
+            } else {
+                exhausted = true;
+            }
+        }
+
+        @Override
+        public void remove() {
+            throw new UnsupportedOperationException();
+        }
+
+        @Override
+        public void close() {
+            try {
+                iterator.close();
+            } catch (IOException e) {
+                logger.error("Failed to close db iterator", e);
+            }
+        }
+    }
 }
@@ -0,0 +1,75 @@
+package io.taucoin.datasource;
+
+import io.taucoin.db.ByteArrayWrapper;
+
+import java.util.*;
+
+import static io.taucoin.util.FastByteComparisons.compareTo;
+
+/**
+ * {@link KeyValueIterator} for data sources which don't keep their keys ordered.
+ *
+ * Takes a snapshot of the keys falling into the range, sorts them
+ * and loads values one by one while iterating;
+ * keys removed after the snapshot has been taken are skipped.
+ *
+ * @author taucoin core
+ * @since 01.07.2019
+ */
+public abstract class SortedKeysIterator implements KeyValueIterator {
+
+    private final Iterator<ByteArrayWrapper> keys;
+    private Map.Entry<byte[], byte[]> next;
+
+    public SortedKeysIterator(Collection<byte[]> allKeys, byte[] from, byte[] to, boolean reverse) {
+        List<ByteArrayWrapper> inRange = new ArrayList<>();
+        for (byte[] key : allKeys) {
+            if (isInRange(key, from, to)) inRange.add(new ByteArrayWrapper(key));
+        }
+
+        Collections.sort(inRange);
+        if (reverse) Collections.reverse(inRange);
+
+        this.keys = inRange.iterator();
+    }
+
+    protected abstract byte[] getValue(byte[] key);
+
+    @Override
+    public boolean hasNext() {
+        while (next == null && keys.hasNext()) {
+            byte[] key = keys.next().getData();
+            byte[] value = getValue(key);
+            if (value != null) {
+                next = new AbstractMap.SimpleImmutableEntry<>(key, value);
+            }
+        }
+        return next != null;
+    }
+
+    @Override
+    public Map.Entry<byte[], byte[]> next() {
+        if (!hasNext()) throw new NoSuchElementException();
+
+        Map.Entry<byte[], byte[]> ret = next;
+        next = null;
+        return ret;
+    }
+
+    @Override
+    public void remove() {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public void close() {
+    }
+
+    /**
+     * @return true if <code>from <= key < to</code>, <code>null</code> bounds are open
+     */
+    public static boolean isInRange(byte[] key, byte[] from, byte[] to) {
+        return (from == null || compareTo(key, 0, key.length, from, 0, from.length) >= 0)
+                && (to == null || compareTo(key, 0, key.length, to, 0, to.length) < 0);
+    }
+}
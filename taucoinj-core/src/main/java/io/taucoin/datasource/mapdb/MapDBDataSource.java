@@ -2,6 +2,8 @@ package io.taucoin.datasource.mapdb;
 
 import io.taucoin.config.SystemProperties;
 import io.taucoin.datasource.KeyValueDataSource;
+import io.taucoin.datasource.KeyValueIterator;
+import io.taucoin.datasource.SortedKeysIterator;
 import org.mapdb.DB;
 import org.mapdb.DBMaker;
 import org.mapdb.Serializer;
@@ -83,12 +85,26 @@ public class MapDBDataSource implements KeyValueDataSource {
         return map.keySet();
     }
 
+    @Override
+    public KeyValueIterator iterator(byte[] from, byte[] to, boolean reverse) {
+        return new SortedKeysIterator(map.keySet(), from, to, reverse) {
+            @Override
+            protected byte[] getValue(byte[] key) {
+                return map.get(key);
+            }
+        };
+    }
+
     @Override
     public void updateBatch(Map<byte[], byte[]> rows) {
         int savedSize = 0;
         try {
             for (byte[] key : rows.keySet()) {
                 byte[] value = rows.get(key);
+                if (value == null) {
+                    map.remove(key);
+                    continue;
+                }
                 savedSize += value.length;
 
                 map.put(key, value);
@@ -1,8 +1,11 @@
 package io.taucoin.datasource.redis;
 
 import io.taucoin.datasource.KeyValueDataSource;
+import io.taucoin.datasource.KeyValueIterator;
+import io.taucoin.datasource.SortedKeysIterator;
 import redis.clients.jedis.Jedis;
 import redis.clients.jedis.JedisPool;
+import redis.clients.jedis.Transaction;
 
 import java.util.Map;
 import java.util.Set;
@@ -78,9 +81,32 @@ public class RedisDataSource extends RedisMap<byte[], byte[]> implements KeyValu
         return super.keySet();
     }
 
+    @Override
+    public KeyValueIterator iterator(byte[] from, byte[] to, boolean reverse) {
+        return new SortedKeysIterator(keys(), from, to, reverse) {
+            @Override
+            protected byte[] getValue(byte[] key) {
+                return get(key);
+            }
+        };
+    }
+
     @Override
     public void updateBatch(final Map<byte[], byte[]> rows) {
-        putAll(rows);
+        pooled(new Consumer<Jedis>() {
+            @Override
+            public void accept(Jedis jedis) {
+                Transaction tx = jedis.multi();
+                for (Map.Entry<byte[], byte[]> row : rows.entrySet()) {
+                    if (row.getValue() == null) {
+                        tx.hdel(getNameBytes(), row.getKey());
+                    } else {
+                        tx.hset(getNameBytes(), row.getKey(), row.getValue());
+                    }
+                }
+                tx.exec();
+            }
+        });
     }
 
     @Override
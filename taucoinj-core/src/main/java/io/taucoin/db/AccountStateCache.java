@@ -0,0 +1,156 @@
+package io.taucoin.db;
+
+import io.taucoin.core.AccountState;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static io.taucoin.util.ByteUtil.wrap;
+
+/**
+ * Bounded LRU cache of decoded {@link AccountState} objects
+ * sitting in front of the state DB.
+ *
+ * Entries are weighted by their RLP encoded size, so a few accounts
+ * with long transaction history can't silently blow up the heap.
+ *
+ * Values loaded by readers are only accepted if no write or invalidation
+ * happened since the reader took its {@link #stamp()}, this keeps a slow
+ * reader from putting an outdated state back after a commit.
+ *
+ * @author taucoin core
+ * @since 01.07.2019
+ */
+public class AccountStateCache {
+
+    private final long maxSize;
+
+    private final LinkedHashMap<ByteArrayWrapper, Entry> entries =
+            new LinkedHashMap<>(1024, 0.75f, true);
+
+    private long size = 0;
+    private long generation = 0;
+
+    private long hits = 0;
+    private long misses = 0;
+    private long evictions = 0;
+
+    /**
+     * @param maxSize summary RLP size of the cached accounts in bytes,
+     *                0 disables caching
+     */
+    public AccountStateCache(long maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public synchronized AccountState get(byte[] addr) {
+        Entry entry = entries.get(wrap(addr));
+        if (entry == null) {
+            ++misses;
+            return null;
+        }
+        ++hits;
+        return entry.state;
+    }
+
+    /**
+     * @return current generation, to be passed to {@link #fill}
+     */
+    public synchronized long stamp() {
+        return generation;
+    }
+
+    /**
+     * Caches the state read from the DB unless the cache
+     * has been modified after the <code>stamp</code> was taken
+     */
+    public synchronized void fill(byte[] addr, AccountState state, long stamp) {
+        if (stamp != generation) return;
+        insert(wrap(addr), state);
+    }
+
+    /**
+     * Caches the state which has just been written to the DB
+     */
+    public synchronized void put(byte[] addr, AccountState state) {
+        ++generation;
+        insert(wrap(addr), state);
+    }
+
+    public synchronized void invalidate(byte[] addr) {
+        ++generation;
+        Entry removed = entries.remove(wrap(addr));
+        if (removed != null) size -= removed.weight;
+    }
+
+    public synchronized void invalidateAll() {
+        ++generation;
+        entries.clear();
+        size = 0;
+    }
+
+    public synchronized int getEntryCount() {
+        return entries.size();
+    }
+
+    public synchronized long getSize() {
+        return size;
+    }
+
+    public long getMaxSize() {
+        return maxSize;
+    }
+
+    public synchronized long getHitCount() {
+        return hits;
+    }
+
+    public synchronized long getMissCount() {
+        return misses;
+    }
+
+    public synchronized long getEvictionCount() {
+        return evictions;
+    }
+
+    public synchronized double getHitRate() {
+        long total = hits + misses;
+        return total == 0 ? 0 : (double) hits / total;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("AccountStateCache{entries=%d, size=%d/%d, hitRate=%.3f, evictions=%d}",
+                entries.size(), size, maxSize, getHitRate(), evictions);
+    }
+
+    private void insert(ByteArrayWrapper key, AccountState state) {
+        Entry entry = new Entry(state);
+
+        Entry replaced = entries.remove(key);
+        if (replaced != null) size -= replaced.weight;
+
+        if (entry.weight > maxSize) return;
+
+        entries.put(key, entry);
+        size += entry.weight;
+
+        Iterator<Map.Entry<ByteArrayWrapper, Entry>> it = entries.entrySet().iterator();
+        while (size > maxSize && it.hasNext()) {
+            size -= it.next().getValue().weight;
+            it.remove();
+            ++evictions;
+        }
+    }
+
+    private static class Entry {
+        final AccountState state;
+        final int weight;
+
+        Entry(AccountState state) {
+            this.state = state;
+            this.weight = state.getEncoded().length;
+        }
+    }
+}
@@ -2,6 +2,7 @@ package io.taucoin.db;
 
 import io.taucoin.core.Block;
 import io.taucoin.core.BlockHeader;
+import io.taucoin.core.TransactionLocation;
 import org.hibernate.SessionFactory;
 
 import java.math.BigInteger;
@@ -20,8 +21,33 @@ public interface BlockStore {
     Block getChainBlockByNumber(long blockNumber);
 
     Block getBlockByHash(byte[] hash);
+
+    /**
+     * @return number of the block or -1 if it isn't stored,
+     *         the block body isn't decoded
+     */
+    long getBlockNumber(byte[] hash);
+
+    /**
+     * @return hash of the parent block or <code>null</code> if the block
+     *         isn't stored, the block body isn't decoded
+     */
+    byte[] getBlockParentHash(byte[] hash);
+
+    /**
+     * @return timestamp of the block or <code>null</code> if the block
+     *         isn't stored, the block body isn't decoded
+     */
+    byte[] getBlockTimestamp(byte[] hash);
+
     boolean isBlockExist(byte[] hash);
 
+    /**
+     * @return location of the transaction on the main chain
+     *         or <code>null</code> if it isn't included there
+     */
+    TransactionLocation getTransactionLocation(byte[] txHash);
+
     List<byte[]> getListHashesEndWith(byte[] hash, long qty);
 
     List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty);
@@ -44,12 +70,38 @@ public interface BlockStore {
 
     long getMaxNumber();
 
+    /**
+     * Writes out all the cached blocks and waits until they are stored
+     */
     void flush();
 
+    /**
+     * Starts writing out the cached blocks in background
+     */
+    void flushAsync();
+
+    /**
+     * @return true if the cached blocks exceed the configured size, count or age
+     */
+    boolean needFlush();
+
     boolean getForkBlocksInfo(Block forkBlock, List<Block> undoBlocks, List<Block> newBlocks);
 
     void reBranchBlocks(List<Block> undoBlocks, List<Block> newBlocks);
 
+    /**
+     * Stores the state changes needed to undo the main chain block,
+     * journals are deleted along with the blocks they belong to and
+     * by {@link #delNonChainBlocksByNumber(long)} beyond the mutable range
+     */
+    void saveUndoJournal(byte[] hash, byte[] journal);
+
+    /**
+     * @return journal saved for the block or <code>null</code>
+     *         if it was applied before journals were kept
+     */
+    byte[] getUndoJournal(byte[] hash);
+
     void load();
     void setSessionFactory(SessionFactory sessionFactory);
 
@@ -2,6 +2,8 @@ package io.taucoin.db;
 
 import io.taucoin.core.Block;
 import io.taucoin.core.BlockHeader;
+import io.taucoin.core.Transaction;
+import io.taucoin.core.TransactionLocation;
 import org.hibernate.Session;
 import org.hibernate.SessionFactory;
 import org.slf4j.Logger;
@@ -9,6 +11,7 @@ import org.slf4j.LoggerFactory;
 
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -71,12 +74,44 @@ public class InMemoryBlockStore implements BlockStore{
             return block;
     }
 
+    @Override
+    public long getBlockNumber(byte[] hash) {
+        Block block = getBlockByHash(hash);
+        return block == null ? -1 : block.getNumber();
+    }
+
+    @Override
+    public byte[] getBlockParentHash(byte[] hash) {
+        Block block = getBlockByHash(hash);
+        return block == null ? null : block.getPreviousHeaderHash();
+    }
+
+    @Override
+    public byte[] getBlockTimestamp(byte[] hash) {
+        Block block = getBlockByHash(hash);
+        return block == null ? null : block.getTimestamp();
+    }
+
     @Override
     public boolean isBlockExist(byte[] hash) {
         Block block = hashIndex.get(wrap(hash));
         return block != null || dbGetBlockByHash(hash) != null;
     }
 
+    @Override
+    public TransactionLocation getTransactionLocation(byte[] txHash) {
+
+        for (Block block : blocks) {
+            List<Transaction> txs = block.getTransactionsList();
+            for (int i = 0; i < txs.size(); ++i) {
+                if (Arrays.equals(txs.get(i).getHash(), txHash))
+                    return new TransactionLocation(block.getHash(), i);
+            }
+        }
+
+        return null;
+    }
+
     @Override
     public List<byte[]> getListHashesEndWith(byte[] hash, long qty) {
         List<Block> blocks = getListBlocksEndWith(hash, qty);
@@ -95,7 +130,9 @@ public class InMemoryBlockStore implements BlockStore{
         List<BlockHeader> headers = new ArrayList<>(blocks.size());
 
         for (Block b : blocks) {
-            headers.add(b.getHeader());
+            BlockHeader header = new BlockHeader(b.getEncodedHeader());
+            header.setNumber(b.getNumber());
+            headers.add(header);
         }
 
         return headers;
@@ -185,6 +222,16 @@ public class InMemoryBlockStore implements BlockStore{
         return new Block(vo.rlp);
     }
 
+    @Override
+    public void flushAsync() {
+        flush();
+    }
+
+    @Override
+    public boolean needFlush() {
+        return false;
+    }
+
     @Override
     public void flush(){
 
@@ -227,6 +274,16 @@ public class InMemoryBlockStore implements BlockStore{
         s.close();
     }
 
+    @Override
+    public void saveUndoJournal(byte[] hash, byte[] journal) {
+
+    }
+
+    @Override
+    public byte[] getUndoJournal(byte[] hash) {
+        return null;
+    }
+
     @Override
     public void delNonChainBlock(byte[] hash) {
 
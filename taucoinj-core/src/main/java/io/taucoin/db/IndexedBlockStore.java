@@ -2,7 +2,12 @@ package io.taucoin.db;
 
 import io.taucoin.core.Block;
 import io.taucoin.core.BlockHeader;
+import io.taucoin.core.Transaction;
+import io.taucoin.core.TransactionLocation;
 import io.taucoin.datasource.KeyValueDataSource;
+import io.taucoin.datasource.KeyValueIterator;
+import io.taucoin.util.RLP;
+import io.taucoin.util.RLPList;
 import org.hibernate.SessionFactory;
 import org.mapdb.DB;
 import org.mapdb.DataIO;
@@ -13,23 +18,94 @@ import org.slf4j.LoggerFactory;
 import java.io.*;
 import java.math.BigInteger;
 import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 import static java.math.BigInteger.ZERO;
+import static io.taucoin.config.SystemProperties.CONFIG;
 import static io.taucoin.crypto.HashUtil.shortHash;
+import static io.taucoin.util.ByteUtil.byteArrayToLong;
+import static io.taucoin.util.ByteUtil.longToBytes;
+import static io.taucoin.util.ByteUtil.merge;
+import static io.taucoin.util.ByteUtil.prefixUpperBound;
+import static java.util.Arrays.copyOfRange;
 import static org.spongycastle.util.Arrays.areEqual;
 
 public class IndexedBlockStore implements BlockStore{
 
     private static final Logger logger = LoggerFactory.getLogger("general");
 
-    IndexedBlockStore cache;
+    // Transaction index rows live in the blocks source next to the block bodies,
+    // the prefix keeps them apart from the 20 bytes block hash keys
+    private static final byte[] TX_INDEX_PREFIX = {'t'};
+
+    // Header records let hash and header queries skip the block bodies,
+    // they are written through together with the undo journals, so the
+    // state committed after a block can be moved back over it when the
+    // block itself is lost with the write cache
+    private static final byte[] HEADER_PREFIX = {'h'};
+    private static final int HEADER_TIMESTAMP = 1;
+    private static final int HEADER_PARENT_HASH = 2;
+
+    // Undo journals of the main chain blocks within the mutable range
+    private static final byte[] UNDO_PREFIX = {'u'};
+
+    // Index levels changed since the last index commit, keyed by the cache
+    // generation and the level number and written out in the same batch as
+    // the cached rows, so the index is put back by load() after a crash
+    private static final byte[] LEVEL_PREFIX = {'l'};
+    private static final int LEVEL_KEY_LENGTH = LEVEL_PREFIX.length + 16;
+
+    // marks the rows deleted in the write cache, looked up by identity
+    private static final byte[] DELETED = new byte[0];
+
+    private static final String INDEX_NAME = "blockIndex";
+    private static final String LEGACY_INDEX_NAME = "index";
+
+    private static final ExecutorService flushExecutor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread t = new Thread(r, "BlockStoreFlushThread");
+            t.setDaemon(true);
+            return t;
+        }
+    });
+
+    // holds the rows and the index levels changed since the last flush,
+    // every cached level is a whole level, so it replaces the stored one
+    volatile IndexedBlockStore cache;
     Map<Long, List<BlockInfo>> index;
     KeyValueDataSource blocks;
 
     DB indexDB;
 
+    // write cache handed over to the flush thread, it isn't modified
+    // anymore and is looked up after the cache until it is written out
+    private volatile IndexedBlockStore flushing;
+    private Future<?> flushTask;
+
+    // rows of the blocks source written since the last flush,
+    // maintained by the cache instance
+    private final Map<ByteArrayWrapper, byte[]> rows = new ConcurrentHashMap<>();
+
+    // write cache accounting, maintained by the cache instance
+    private long generation = 0;
+    private long cacheSize = 0;
+    private int cacheBlocks = 0;
+    private long firstCachedTime = 0;
+    private long maxCachedNumber = -1;
+
+    private long flushSize = CONFIG.cacheFlushSize();
+    private int flushBlocks = CONFIG.cacheFlushBlocks();
+    private long flushAge = CONFIG.cacheFlushAge() * 1000L;
+
     public IndexedBlockStore(){
     }
 
@@ -62,57 +138,149 @@ public class IndexedBlockStore implements BlockStore{
     }
 
     public byte[] getBlockHashByNumber(long blockNumber){
-        return getChainBlockByNumber(blockNumber).getHash(); // FIXME: can be improved by accessing the hash directly in the index
+
+        List<BlockInfo> blockInfos = getBlockInfoForLevel(blockNumber);
+        if (blockInfos == null){
+            return null;
+        }
+
+        for (BlockInfo blockInfo : blockInfos){
+            if (blockInfo.isMainChain()){
+                return blockInfo.getHash();
+            }
+        }
+
+        return null;
     }
 
 
     @Override
-    public void flush(){
+    public boolean needFlush() {
+
+        IndexedBlockStore cache = this.cache;
+        if (cache == null || cache.cacheBlocks == 0) return false;
+
+        return cache.cacheSize >= flushSize
+                || cache.cacheBlocks >= flushBlocks
+                || System.currentTimeMillis() - cache.firstCachedTime >= flushAge;
+    }
+
+    @Override
+    public synchronized void flush(){
+
+        flushAsync();
+        awaitFlush();
+    }
+
+    @Override
+    public synchronized void flushAsync() {
 
         if (cache == null) return;
 
-        long t1 = System.nanoTime();
+        finishFlush();
+
+        if (cache.rows.isEmpty() && cache.index.isEmpty()) return;
+
+        final IndexedBlockStore snapshot = cache;
+        flushing = snapshot;
+        cache = createCache(snapshot.generation + 1);
 
-        for (byte[] hash : cache.blocks.keys()){
-            blocks.put(hash, cache.blocks.get(hash));
+        flushTask = flushExecutor.submit(new Runnable() {
+            @Override
+            public void run() {
+                writeOut(snapshot);
+            }
+        });
+    }
+
+    /**
+     * Waits for the write started by {@link #flushAsync()}, all the methods
+     * modifying already cached blocks call it first, so the cache handed
+     * over to the flush thread never changes under it
+     */
+    private synchronized void awaitFlush() {
+
+        if (flushTask == null) return;
+
+        try {
+            flushTask.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            logger.error("Flush block store failed", e.getCause());
         }
+        flushTask = null;
+    }
 
-        for (Map.Entry<Long, List<BlockInfo>> e : cache.index.entrySet()) {
-            Long number = e.getKey();
-            List<BlockInfo> infos = e.getValue();
+    /**
+     * Waits for the pending flush, the one which has failed has its rows
+     * and levels still only in memory and they are written out here
+     */
+    private synchronized void finishFlush() {
 
-            if (index.containsKey(number)) infos.addAll(index.get(number));
-            index.put(number, infos);
+        awaitFlush();
+
+        if (flushing != null) {
+            writeOut(flushing);
         }
+    }
 
-        cache.blocks.close();
-        cache.index.clear();
+    /**
+     * Writes out the cached rows with one batch of the blocks source and
+     * the cached levels with one commit of the block index. The levels are
+     * journaled in the same batch as the rows and the journal is dropped
+     * once the index commit is done
+     */
+    private void writeOut(IndexedBlockStore snapshot) {
 
-        long t2 = System.nanoTime();
+        long t1 = System.nanoTime();
+
+        Map<byte[], byte[]> rows = new HashMap<>(snapshot.rows.size() + snapshot.index.size());
+        for (Map.Entry<ByteArrayWrapper, byte[]> row : snapshot.rows.entrySet()) {
+            byte[] value = row.getValue();
+            rows.put(row.getKey().getData(), value == DELETED ? null : value);
+        }
+        for (Map.Entry<Long, List<BlockInfo>> e : snapshot.index.entrySet()) {
+            rows.put(levelKey(snapshot.generation, e.getKey()), encodeLevel(e.getValue()));
+        }
+        blocks.updateBatch(rows);
+
+        for (Map.Entry<Long, List<BlockInfo>> e : snapshot.index.entrySet()) {
+            index.put(e.getKey(), e.getValue());
+        }
 
         if (indexDB != null) {
             indexDB.commit();
         }
 
-        logger.info("Flush block store in: {} ms", ((float)(t2 - t1) / 1_000_000));
+        Map<byte[], byte[]> journal = new HashMap<>(snapshot.index.size());
+        for (Long number : snapshot.index.keySet()) {
+            journal.put(levelKey(snapshot.generation, number), null);
+        }
+        blocks.updateBatch(journal);
 
-    }
+        flushing = null;
 
+        long t2 = System.nanoTime();
 
-    @Override
-    public void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain){
-        if (cache == null)
-            addInternalBlock(block, cummDifficulty, mainChain);
-        else
-            cache.saveBlock(block, cummDifficulty, mainChain);
+        logger.info("Flush block store: {} blocks, {} bytes in: {} ms",
+                snapshot.cacheBlocks, snapshot.cacheSize, ((float)(t2 - t1) / 1_000_000));
     }
 
-    private void addInternalBlock(Block block, BigInteger cummDifficulty, boolean mainChain){
+    private static IndexedBlockStore createCache(long generation) {
+        IndexedBlockStore cache = new IndexedBlockStore();
+        cache.init(new ConcurrentHashMap<Long, List<BlockInfo>>(), null, null, null);
+        cache.generation = generation;
+        return cache;
+    }
 
-        List<BlockInfo> blockInfos = index.get(block.getNumber());
-        if (blockInfos == null){
-            blockInfos = new ArrayList<>();
-        }
+
+    @Override
+    public synchronized void saveBlock(Block block, BigInteger cummDifficulty, boolean mainChain){
+
+        // levels are replaced rather than modified, readers may iterate them
+        List<BlockInfo> stored = getBlockInfoForLevel(block.getNumber());
+        List<BlockInfo> blockInfos = stored == null ? new ArrayList<BlockInfo>() : new ArrayList<>(stored);
 
         BlockInfo blockInfo = new BlockInfo();
         blockInfo.setCummDifficulty(cummDifficulty);
@@ -120,23 +288,42 @@ public class IndexedBlockStore implements BlockStore{
         blockInfo.setMainChain(mainChain); // FIXME:maybe here I should force reset main chain for all uncles on that level
 
         blockInfos.add(blockInfo);
-        index.put(block.getNumber(), blockInfos);
 
-        blocks.put(block.getHash(), block.getEncoded());
-    }
+        Map<byte[], byte[]> header = new HashMap<>();
+        header.put(headerKey(block.getHash()), encodeHeader(block));
+        writeThrough(header);
 
-    @Override
-    public void delNonChainBlock(byte[] hash) {
+        Map<byte[], byte[]> rows = new HashMap<>();
+        rows.put(block.getHash(), block.getEncoded());
+        if (mainChain) {
+            addTransactionRows(block, rows);
+        }
+
+        Map<Long, List<BlockInfo>> levels = new HashMap<>();
+        levels.put(block.getNumber(), blockInfos);
+        writeRows(rows, levels);
+
+        IndexedBlockStore cache = this.cache;
         if (cache != null) {
-            cache.delNonChainBlock(hash);
+            if (cache.cacheBlocks == 0) cache.firstCachedTime = System.currentTimeMillis();
+            ++cache.cacheBlocks;
+            cache.maxCachedNumber = Math.max(cache.maxCachedNumber, block.getNumber());
         }
+    }
 
-        byte[] blockRlp = blocks.get(hash);
+    @Override
+    public synchronized void delNonChainBlock(byte[] hash) {
+        awaitFlush();
+
+        byte[] blockRlp = getRow(hash);
         if (blockRlp == null)
             return;
         Block block = new Block(blockRlp);
 
-        List<BlockInfo> blockInfos = index.get(block.getNumber());
+        List<BlockInfo> stored = getBlockInfoForLevel(block.getNumber());
+        if (stored == null)
+            return;
+        List<BlockInfo> blockInfos = new ArrayList<>(stored);
         for (BlockInfo blockInfo : blockInfos) {
             if (areEqual(blockInfo.getHash(), hash)) {
                 if (blockInfo.mainChain) {
@@ -146,8 +333,16 @@ public class IndexedBlockStore implements BlockStore{
                 break;
             }
         }
-        index.put(block.getNumber(), blockInfos);
-        blocks.delete(hash);
+
+        Map<byte[], byte[]> rows = new HashMap<>();
+        addRemovedTransactionRows(block, rows);
+        rows.put(undoKey(hash), null);
+        rows.put(headerKey(hash), null);
+        rows.put(hash, null);
+
+        Map<Long, List<BlockInfo>> levels = new HashMap<>();
+        levels.put(block.getNumber(), blockInfos);
+        writeRows(rows, levels);
     }
 
     //Do not use this interface easily (different blocks in different branch may have common parent)
@@ -169,31 +364,41 @@ public class IndexedBlockStore implements BlockStore{
     }
 
     @Override
-    public void delNonChainBlocksByNumber(long number) {
-        if (cache != null) {
-            cache.delNonChainBlocksByNumber(number);
-        }
+    public synchronized void delNonChainBlocksByNumber(long number) {
+        awaitFlush();
+
+        List<BlockInfo> blockInfos = getBlockInfoForLevel(number);
+        if (blockInfos == null)
+            return;
 
-        List<BlockInfo> blockInfos = index.get(number);
         List<BlockInfo> newBlockInfos = new ArrayList<>();
+        Map<byte[], byte[]> rows = new HashMap<>();
         for (BlockInfo blockInfo : blockInfos) {
+            // the level is out of the mutable range, it's never undone
+            rows.put(undoKey(blockInfo.hash), null);
+
             if (blockInfo.mainChain) {
                 newBlockInfos.add(blockInfo);
             } else {
-                blocks.delete(blockInfo.hash);
+                byte[] blockRlp = getRow(blockInfo.hash);
+                if (blockRlp != null)
+                    addRemovedTransactionRows(new Block(blockRlp), rows);
+                rows.put(headerKey(blockInfo.hash), null);
+                rows.put(blockInfo.hash, null);
             }
         }
-        index.put(number, newBlockInfos);
+
+        Map<Long, List<BlockInfo>> levels = new HashMap<>();
+        levels.put(number, newBlockInfos);
+        writeRows(rows, levels);
     }
 
 
     public List<Block> getBlocksByNumber(long number){
 
         List<Block> result = new ArrayList<>();
-        if (cache != null)
-            result = cache.getBlocksByNumber(number);
 
-        List<BlockInfo> blockInfos = index.get(number);
+        List<BlockInfo> blockInfos = getBlockInfoForLevel(number);
         if (blockInfos == null){
             return result;
         }
@@ -201,9 +406,11 @@ public class IndexedBlockStore implements BlockStore{
         for (BlockInfo blockInfo : blockInfos){
 
             byte[] hash = blockInfo.getHash();
-            byte[] blockRlp = blocks.get(hash);
+            byte[] blockRlp = getRow(hash);
 
-            result.add(new Block(blockRlp));
+            // the block may be deleted right before its level is replaced
+            if (blockRlp != null)
+                result.add(new Block(blockRlp));
         }
         return result;
     }
@@ -211,12 +418,7 @@ public class IndexedBlockStore implements BlockStore{
     @Override
     public Block getChainBlockByNumber(long number){
 
-        if (cache != null) {
-            Block block = cache.getChainBlockByNumber(number);
-            if (block != null) return block;
-        }
-
-        List<BlockInfo> blockInfos = index.get(number);
+        List<BlockInfo> blockInfos = getBlockInfoForLevel(number);
         if (blockInfos == null){
             return null;
         }
@@ -226,7 +428,7 @@ public class IndexedBlockStore implements BlockStore{
             if (blockInfo.isMainChain()){
 
                 byte[] hash = blockInfo.getHash();
-                byte[] blockRlp = blocks.get(hash);
+                byte[] blockRlp = getRow(hash);
                 return new Block(blockRlp);
             }
         }
@@ -237,12 +439,7 @@ public class IndexedBlockStore implements BlockStore{
     @Override
     public Block getBlockByHash(byte[] hash) {
 
-        if (cache != null) {
-            Block cachedBlock = cache.getBlockByHash(hash);
-            if (cachedBlock != null) return cachedBlock;
-        }
-
-        byte[] blockRlp = blocks.get(hash);
+        byte[] blockRlp = getRow(hash);
         if (blockRlp == null)
             return null;
 
@@ -250,31 +447,73 @@ public class IndexedBlockStore implements BlockStore{
     }
 
     @Override
-    public boolean isBlockExist(byte[] hash) {
+    public long getBlockNumber(byte[] hash) {
 
-        if (cache != null) {
-            Block cachedBlock = cache.getBlockByHash(hash);
-            if (cachedBlock != null) return true;
-        }
+        RLPList record = getHeaderRecord(hash);
+        if (record == null)
+            return -1;
+
+        return decodeNumber(record);
+    }
 
-        byte[] blockRlp = blocks.get(hash);
+    @Override
+    public byte[] getBlockParentHash(byte[] hash) {
+
+        RLPList record = getHeaderRecord(hash);
+        if (record == null)
+            return null;
+
+        return getHeaderElement(record, HEADER_PARENT_HASH);
+    }
+
+    @Override
+    public byte[] getBlockTimestamp(byte[] hash) {
+
+        RLPList record = getHeaderRecord(hash);
+        if (record == null)
+            return null;
+
+        return getHeaderElement(record, HEADER_TIMESTAMP);
+    }
+
+    @Override
+    public boolean isBlockExist(byte[] hash) {
+
+        byte[] blockRlp = getRow(hash);
         return blockRlp != null;
     }
 
+    @Override
+    public TransactionLocation getTransactionLocation(byte[] txHash) {
+
+        byte[] locationRlp = getRow(txIndexKey(txHash));
+        if (locationRlp == null)
+            return null;
+
+        return new TransactionLocation(locationRlp);
+    }
+
 
     @Override
-    public BigInteger getTotalDifficultyForHash(byte[] hash){
+    public synchronized void saveUndoJournal(byte[] hash, byte[] journal) {
+        Map<byte[], byte[]> rows = new HashMap<>();
+        rows.put(undoKey(hash), journal);
+        writeThrough(rows);
+    }
 
-        if (cache != null && cache.getBlockByHash(hash) != null) {
+    @Override
+    public byte[] getUndoJournal(byte[] hash) {
+        return getRow(undoKey(hash));
+    }
 
-            return cache.getTotalDifficultyForHash(hash);
-        }
+    @Override
+    public BigInteger getTotalDifficultyForHash(byte[] hash){
 
-        Block block = this.getBlockByHash(hash);
-        if (block == null) return ZERO;
+        long level = this.getBlockNumber(hash);
+        if (level < 0) return ZERO;
 
-        Long level  =  block.getNumber();
-        List<BlockInfo> blockInfos =  index.get(level);
+        List<BlockInfo> blockInfos =  getBlockInfoForLevel(level);
+        if (blockInfos == null) return ZERO;
         for (BlockInfo blockInfo : blockInfos) {
             if (areEqual(blockInfo.getHash(), hash)) {
                  return blockInfo.cummDifficulty;
@@ -288,76 +527,50 @@ public class IndexedBlockStore implements BlockStore{
     @Override
     public BigInteger getTotalDifficulty(){
 
-        BigInteger cacheTotalDifficulty = ZERO;
-
-        long maxNumber = getMaxNumber();
-        if (cache != null) {
-
-            List<BlockInfo> infos = getBlockInfoForLevel(maxNumber);
+        // a fork branch may be higher than the main one but have less
+        // TD, the TD is taken from the highest level with a main block
+        for (long number = getMaxNumber(); number >= 0; --number) {
 
-            if (infos != null){
-                for (BlockInfo blockInfo : infos){
-                    if (blockInfo.isMainChain()){
-                        return blockInfo.getCummDifficulty();
-                    }
-                }
+            List<BlockInfo> blockInfos = getBlockInfoForLevel(number);
+            if (blockInfos == null) continue;
 
-                // todo: need better testing for that place
-                // here is the place when you know
-                // for sure that the potential fork
-                // branch is higher than main branch
-                // in that case the correct td is the
-                // first level when you have [mainchain = true] Blockinfo
-                boolean found = false;
-                Map<Long, List<BlockInfo>> searching = cache.index;
-                while (!found){
-
-                    --maxNumber;
-                    infos = getBlockInfoForLevel(maxNumber);
-
-                    for (BlockInfo blockInfo : infos) {
-                        if (blockInfo.isMainChain()) {
-                            found = true;
-                            return blockInfo.getCummDifficulty();
-                        }
-                    }
+            for (BlockInfo blockInfo : blockInfos){
+                if (blockInfo.isMainChain()){
+                    return blockInfo.getCummDifficulty();
                 }
             }
         }
 
-        List<BlockInfo> blockInfos = index.get(maxNumber);
-        for (BlockInfo blockInfo : blockInfos){
-            if (blockInfo.isMainChain()){
-                return blockInfo.getCummDifficulty();
-            }
-        }
-
-        return cacheTotalDifficulty;
+        return ZERO;
     }
 
     @Override
     public long getMaxNumber(){
 
-        Long bestIndex = 0L;
+        long maxNumber = index.size() - 1L;
 
-        if (index.size() > 0){
-            bestIndex = (long) index.size();
-        }
+        IndexedBlockStore cache = this.cache;
+        if (cache != null)
+            maxNumber = Math.max(maxNumber, cache.maxCachedNumber);
 
-        if (cache != null){
-            return bestIndex + cache.index.size() - 1L;
-        } else
-            return bestIndex - 1L;
+        IndexedBlockStore flushing = this.flushing;
+        if (flushing != null)
+            maxNumber = Math.max(maxNumber, flushing.maxCachedNumber);
+
+        return maxNumber;
     }
 
     @Override
     public List<byte[]> getListHashesEndWith(byte[] hash, long number){
 
-        List<Block> blocks = getListBlocksEndWith(hash, number);
-        List<byte[]> hashes = new ArrayList<>(blocks.size());
+        List<byte[]> hashes = new ArrayList<>();
 
-        for (Block b : blocks) {
-            hashes.add(b.getHash());
+        for (int i = 0; i < number; ++i) {
+            byte[] parentHash = getBlockParentHash(hash);
+            if (parentHash == null) break;
+
+            hashes.add(hash);
+            hash = parentHash;
         }
 
         return hashes;
@@ -366,13 +579,16 @@ public class IndexedBlockStore implements BlockStore{
     @Override
     public List<BlockHeader> getListHeadersEndWith(byte[] hash, long qty) {
 
-        List<Block> blocks = getListBlocksEndWith(hash, qty);
-        List<BlockHeader> headers = new ArrayList<>(blocks.size());
+        List<BlockHeader> headers = new ArrayList<>();
+
+        for (int i = 0; i < qty; ++i) {
+            RLPList record = getHeaderRecord(hash);
+            if (record == null) break;
 
-        for (Block b : blocks) {
-            BlockHeader header = b.getHeader();
-            header.setNumber(b.getNumber());
+            BlockHeader header = new BlockHeader((RLPList) record.get(0));
+            header.setNumber(decodeNumber(record));
             headers.add(header);
+            hash = header.getPreviousHeaderHash();
         }
 
         return headers;
@@ -381,27 +597,7 @@ public class IndexedBlockStore implements BlockStore{
     @Override
     public List<Block> getListBlocksEndWith(byte[] hash, long qty) {
 
-        if (cache == null)
-            return getListBlocksEndWithInner(hash, qty);
-
-        List<Block> cachedBlocks = cache.getListBlocksEndWith(hash, qty);
-
-        if (cachedBlocks.size() == qty) return cachedBlocks;
-
-        if (cachedBlocks.isEmpty())
-            return getListBlocksEndWithInner(hash, qty);
-
-        Block latestCached = cachedBlocks.get(cachedBlocks.size() - 1);
-
-        List<Block> notCachedBlocks = getListBlocksEndWithInner(latestCached.getPreviousHeaderHash(), qty - cachedBlocks.size());
-        cachedBlocks.addAll(notCachedBlocks);
-
-        return cachedBlocks;
-    }
-
-    private List<Block> getListBlocksEndWithInner(byte[] hash, long qty) {
-
-        byte[] rlp = this.blocks.get(hash);
+        byte[] rlp = getRow(hash);
 
         if (rlp == null) return new ArrayList<>();
 
@@ -411,7 +607,7 @@ public class IndexedBlockStore implements BlockStore{
 
             Block block = new Block(rlp);
             blocks.add(block);
-            rlp = this.blocks.get(block.getPreviousHeaderHash());
+            rlp = getRow(block.getPreviousHeaderHash());
             if (rlp == null) break;
         }
 
@@ -468,53 +664,168 @@ public class IndexedBlockStore implements BlockStore{
     }
 
     @Override
-    public void reBranchBlocks(List<Block> undoBlocks, List<Block> newBlocks) {
+    public synchronized void reBranchBlocks(List<Block> undoBlocks, List<Block> newBlocks) {
+        awaitFlush();
+
+        Map<Long, List<BlockInfo>> levels = new HashMap<>();
+
+        Map<byte[], byte[]> rows = new HashMap<>();
         for (Block block : undoBlocks) {
-            List<BlockInfo> blocks =  getBlockInfoForLevel(block.getNumber());
-            BlockInfo blockInfo = getBlockInfoForHash(blocks, block.getHash());
-            if (blockInfo != null) {
-                blockInfo.setMainChain(false);
-                updateBlockInfoForLevel(block.getNumber(), blocks);
-            }
+            setMainChain(levels, block, false);
+
+            addRemovedTransactionRows(block, rows);
+            rows.put(undoKey(block.getHash()), null);
         }
 
+        // the batch is keyed by array identity, a tx included on both
+        // branches keeps only the row pointing to the new block
+        Map<ByteArrayWrapper, byte[]> newRows = new HashMap<>();
         for (Block block : newBlocks) {
-            List<BlockInfo> blocks =  getBlockInfoForLevel(block.getNumber());
-            BlockInfo blockInfo = getBlockInfoForHash(blocks, block.getHash());
-            if (blockInfo != null) {
-                blockInfo.setMainChain(true);
-                updateBlockInfoForLevel(block.getNumber(), blocks);
+            setMainChain(levels, block, true);
+
+            Map<byte[], byte[]> blockRows = new HashMap<>();
+            addTransactionRows(block, blockRows);
+            for (Map.Entry<byte[], byte[]> row : blockRows.entrySet()) {
+                newRows.put(new ByteArrayWrapper(row.getKey()), row.getValue());
             }
         }
+
+        Iterator<byte[]> keys = rows.keySet().iterator();
+        while (keys.hasNext()) {
+            if (newRows.containsKey(new ByteArrayWrapper(keys.next()))) keys.remove();
+        }
+        for (Map.Entry<ByteArrayWrapper, byte[]> row : newRows.entrySet()) {
+            rows.put(row.getKey().getData(), row.getValue());
+        }
+
+        writeRows(rows, levels);
     }
 
+    /**
+     * Flips the block on the copy of its level kept in <code>levels</code>,
+     * the level is copied from the store the first time it is changed.
+     * Readers iterate the published levels without locking, so the info
+     * is replaced by a flipped copy rather than modified
+     */
+    private void setMainChain(Map<Long, List<BlockInfo>> levels, Block block, boolean mainChain) {
+
+        List<BlockInfo> blockInfos = levels.get(block.getNumber());
+        if (blockInfos == null) {
+            List<BlockInfo> stored = getBlockInfoForLevel(block.getNumber());
+            if (stored == null) return;
+
+            blockInfos = new ArrayList<>(stored);
+            levels.put(block.getNumber(), blockInfos);
+        }
 
-    public List<byte[]> getListHashesStartWith(long number, long maxBlocks){
+        for (int i = 0; i < blockInfos.size(); ++i) {
+            BlockInfo blockInfo = blockInfos.get(i);
+            if (areEqual(blockInfo.getHash(), block.getHash())) {
+                BlockInfo flipped = new BlockInfo();
+                flipped.setHash(blockInfo.getHash());
+                flipped.setCummDifficulty(blockInfo.getCummDifficulty());
+                flipped.setMainChain(mainChain);
+                blockInfos.set(i, flipped);
+                return;
+            }
+        }
+    }
 
-        List<byte[]> result = new ArrayList<>();
+    /**
+     * Puts the rows and the changed levels into the write cache, without
+     * the cache they are written at once. Levels are published after the
+     * rows, so readers never find a level pointing to a missing block
+     */
+    private void writeRows(Map<byte[], byte[]> rows, Map<Long, List<BlockInfo>> levels) {
+
+        IndexedBlockStore cache = this.cache;
+        if (cache == null) {
+            blocks.updateBatch(rows);
+            for (Map.Entry<Long, List<BlockInfo>> e : levels.entrySet()) {
+                index.put(e.getKey(), e.getValue());
+            }
+            return;
+        }
+
+        for (Map.Entry<byte[], byte[]> row : rows.entrySet()) {
+            byte[] value = row.getValue() == null ? DELETED : row.getValue();
+            cache.rows.put(new ByteArrayWrapper(row.getKey()), value);
+            cache.cacheSize += row.getKey().length + value.length;
+        }
+        for (Map.Entry<Long, List<BlockInfo>> e : levels.entrySet()) {
+            cache.index.put(e.getKey(), e.getValue());
+        }
+    }
 
-        int i;
-        for ( i = 0; i < maxBlocks; ++i){
-            List<BlockInfo> blockInfos =  index.get(number);
-            if (blockInfos == null) break;
+    /**
+     * Writes the rows to the blocks source at once, their cached versions
+     * are dropped. A flush which would write the rows over is finished first
+     */
+    private void writeThrough(Map<byte[], byte[]> rows) {
+
+        IndexedBlockStore flushing = this.flushing;
+        if (flushing != null) {
+            for (byte[] key : rows.keySet()) {
+                if (flushing.rows.containsKey(new ByteArrayWrapper(key))) {
+                    finishFlush();
+                    break;
+                }
+            }
+        }
 
-            for (BlockInfo blockInfo : blockInfos)
-               if (blockInfo.isMainChain()){
-                   result.add(blockInfo.getHash());
-                   break;
-               }
+        blocks.updateBatch(rows);
 
-            ++number;
+        IndexedBlockStore cache = this.cache;
+        if (cache != null) {
+            for (byte[] key : rows.keySet()) {
+                cache.rows.remove(new ByteArrayWrapper(key));
+            }
         }
-        maxBlocks -= i;
+    }
 
-        if (cache != null)
-            result.addAll( cache.getListHashesStartWith(number, maxBlocks) );
+    /**
+     * Looks the row up in the write cache, in the cache being written out
+     * and then in the blocks source
+     */
+    private byte[] getRow(byte[] key) {
+
+        ByteArrayWrapper wrapped = new ByteArrayWrapper(key);
+
+        IndexedBlockStore cache = this.cache;
+        if (cache != null) {
+            byte[] value = cache.rows.get(wrapped);
+            if (value != null) return value == DELETED ? null : value;
+        }
+
+        IndexedBlockStore flushing = this.flushing;
+        if (flushing != null) {
+            byte[] value = flushing.rows.get(wrapped);
+            if (value != null) return value == DELETED ? null : value;
+        }
+
+        return blocks.get(key);
+    }
+
+
+    public List<byte[]> getListHashesStartWith(long number, long maxBlocks){
+
+        List<byte[]> result = new ArrayList<>();
+
+        for (int i = 0; i < maxBlocks; ++i){
+            byte[] hash = getBlockHashByNumber(number + i);
+            if (hash == null) break;
+
+            result.add(hash);
+        }
 
         return result;
     }
 
     public static class BlockInfo implements Serializable {
+
+        // pinned to the implicit value, needed to read legacy index files
+        private static final long serialVersionUID = 7751099904372168336L;
+
         byte[] hash;
         BigInteger cummDifficulty;
         boolean mainChain;
@@ -545,8 +856,54 @@ public class IndexedBlockStore implements BlockStore{
     }
 
 
+    /**
+     * Layout of a level: [count] followed by [hash length, hash,
+     * difficulty length, difficulty, mainChain] for every block,
+     * lengths and count are packed ints
+     */
     public static final Serializer<List<BlockInfo>> BLOCK_INFO_SERIALIZER = new Serializer<List<BlockInfo>>(){
 
+        @Override
+        public void serialize(DataOutput out, List<BlockInfo> value) throws IOException {
+            DataIO.packInt(out, value.size());
+            for (BlockInfo blockInfo : value) {
+                DataIO.packInt(out, blockInfo.hash.length);
+                out.write(blockInfo.hash);
+
+                byte[] cummDifficulty = blockInfo.cummDifficulty.toByteArray();
+                DataIO.packInt(out, cummDifficulty.length);
+                out.write(cummDifficulty);
+
+                out.writeBoolean(blockInfo.mainChain);
+            }
+        }
+
+        @Override
+        public List<BlockInfo> deserialize(DataInput in, int available) throws IOException {
+            int size = DataIO.unpackInt(in);
+            List<BlockInfo> value = new ArrayList<>(size);
+            for (int i = 0; i < size; ++i) {
+                BlockInfo blockInfo = new BlockInfo();
+
+                blockInfo.hash = new byte[DataIO.unpackInt(in)];
+                in.readFully(blockInfo.hash);
+
+                byte[] cummDifficulty = new byte[DataIO.unpackInt(in)];
+                in.readFully(cummDifficulty);
+                blockInfo.cummDifficulty = new BigInteger(cummDifficulty);
+
+                blockInfo.mainChain = in.readBoolean();
+                value.add(blockInfo);
+            }
+            return value;
+        }
+    };
+
+    /**
+     * Java serialization based format of the index, kept to migrate old index files
+     */
+    public static final Serializer<List<BlockInfo>> LEGACY_BLOCK_INFO_SERIALIZER = new Serializer<List<BlockInfo>>(){
+
         @Override
         public void serialize(DataOutput out, List<BlockInfo> value) throws IOException {
             ByteArrayOutputStream bos = new ByteArrayOutputStream();
@@ -577,13 +934,55 @@ public class IndexedBlockStore implements BlockStore{
         }
     };
 
+    /**
+     * Opens the block index kept in <code>indexDB</code>, index written
+     * by the older versions with {@link #LEGACY_BLOCK_INFO_SERIALIZER}
+     * is converted to {@link #BLOCK_INFO_SERIALIZER} first.
+     *
+     * The old map is dropped in the same commit the new one is filled,
+     * so an interrupted migration is simply repeated on the next start.
+     */
+    public static Map<Long, List<BlockInfo>> openIndex(DB indexDB) {
+
+        Map<Long, List<BlockInfo>> index = indexDB.hashMapCreate(INDEX_NAME)
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(BLOCK_INFO_SERIALIZER)
+                .counterEnable()
+                .makeOrGet();
+
+        if (!indexDB.exists(LEGACY_INDEX_NAME))
+            return index;
+
+        long t1 = System.nanoTime();
+
+        Map<Long, List<BlockInfo>> legacyIndex = indexDB.hashMapCreate(LEGACY_INDEX_NAME)
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(LEGACY_BLOCK_INFO_SERIALIZER)
+                .counterEnable()
+                .makeOrGet();
+
+        index.clear();
+        for (Map.Entry<Long, List<BlockInfo>> e : legacyIndex.entrySet()) {
+            index.put(e.getKey(), e.getValue());
+        }
+        int levels = legacyIndex.size();
+
+        indexDB.delete(LEGACY_INDEX_NAME);
+        indexDB.commit();
+
+        long t2 = System.nanoTime();
+        logger.info("Block index migrated: {} levels in: {} ms", levels, ((float)(t2 - t1) / 1_000_000));
+
+        return index;
+    }
+
 
     public void printChain(){
 
         Long number = getMaxNumber();
 
         for (long i = 0; i < number; ++i){
-            List<BlockInfo> levelInfos = index.get(i);
+            List<BlockInfo> levelInfos = getBlockInfoForLevel(i);
 
             if (levelInfos != null) {
                 System.out.print(i);
@@ -597,29 +996,23 @@ public class IndexedBlockStore implements BlockStore{
             }
 
         }
-
-        if (cache != null)
-            cache.printChain();
     }
 
     private List<BlockInfo> getBlockInfoForLevel(Long level){
 
+        IndexedBlockStore cache = this.cache;
         if (cache != null){
             List<BlockInfo> infos =  cache.index.get(level);
             if (infos != null) return infos;
         }
 
-        return index.get(level);
-    }
-
-    private void updateBlockInfoForLevel(Long level, List<BlockInfo> infos) {
-
-        if (cache != null && cache.index != null) {
-            cache.index.put(level, infos);
-            return;
+        IndexedBlockStore flushing = this.flushing;
+        if (flushing != null){
+            List<BlockInfo> infos =  flushing.index.get(level);
+            if (infos != null) return infos;
         }
 
-        index.put(level, infos);
+        return index.get(level);
     }
 
     private static BlockInfo getBlockInfoForHash(List<BlockInfo> blocks, byte[] hash){
@@ -630,8 +1023,124 @@ public class IndexedBlockStore implements BlockStore{
         return null;
     }
 
+    private static byte[] headerKey(byte[] hash) {
+        return merge(HEADER_PREFIX, hash);
+    }
+
+    private static byte[] undoKey(byte[] hash) {
+        return merge(UNDO_PREFIX, hash);
+    }
+
+    /**
+     * Header record: [[version, timeStamp, previousHeaderHash, forgerPubkey], number]
+     */
+    private RLPList getHeaderRecord(byte[] hash) {
+
+        byte[] headerRlp = getRow(headerKey(hash));
+        if (headerRlp == null) {
+            // blocks saved before the header records were introduced
+            byte[] blockRlp = getRow(hash);
+            if (blockRlp == null)
+                return null;
+
+            headerRlp = encodeHeader(new Block(blockRlp));
+        }
+
+        return (RLPList) RLP.decode2(headerRlp).get(0);
+    }
+
+    private static byte[] encodeHeader(Block block) {
+        return RLP.encodeList(block.getEncodedHeader(),
+                RLP.encodeBigInteger(BigInteger.valueOf(block.getNumber())));
+    }
+
+    private static byte[] getHeaderElement(RLPList record, int index) {
+        return ((RLPList) record.get(0)).get(index).getRLPData();
+    }
+
+    private static long decodeNumber(RLPList record) {
+        byte[] number = record.get(1).getRLPData();
+        return number == null ? 0 : new BigInteger(1, number).longValue();
+    }
+
+    private static byte[] levelKey(long generation, long number) {
+        return merge(LEVEL_PREFIX, longToBytes(generation), longToBytes(number));
+    }
+
+    private static byte[] encodeLevel(List<BlockInfo> blockInfos) {
+        try {
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            BLOCK_INFO_SERIALIZER.serialize(new DataOutputStream(bos), blockInfos);
+            return bos.toByteArray();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static List<BlockInfo> decodeLevel(byte[] data) {
+        try {
+            return BLOCK_INFO_SERIALIZER.deserialize(new DataInputStream(new ByteArrayInputStream(data)), data.length);
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    private static byte[] txIndexKey(byte[] txHash) {
+        return merge(TX_INDEX_PREFIX, txHash);
+    }
+
+    private static void addTransactionRows(Block block, Map<byte[], byte[]> rows) {
+        List<Transaction> txs = block.getTransactionsList();
+        for (int i = 0; i < txs.size(); ++i) {
+            rows.put(txIndexKey(txs.get(i).getHash()),
+                    new TransactionLocation(block.getHash(), i).getEncoded());
+        }
+    }
+
+    /**
+     * Adds deletes of the index rows of the block transactions,
+     * rows which already point to another block are kept
+     */
+    private void addRemovedTransactionRows(Block block, Map<byte[], byte[]> rows) {
+        for (Transaction tx : block.getTransactionsList()) {
+            byte[] key = txIndexKey(tx.getHash());
+            byte[] locationRlp = getRow(key);
+            if (locationRlp != null &&
+                    areEqual(new TransactionLocation(locationRlp).getBlockHash(), block.getHash())) {
+                rows.put(key, null);
+            }
+        }
+    }
+
+    /**
+     * Puts back the index levels changed after the last index commit,
+     * they are found journaled in the blocks source after a crash
+     */
     @Override
-    public void load() {
+    public synchronized void load() {
+
+        Map<byte[], byte[]> rows = new HashMap<>();
+        try (KeyValueIterator it = blocks.iterator(LEVEL_PREFIX, prefixUpperBound(LEVEL_PREFIX), false)) {
+            while (it.hasNext()) {
+                Map.Entry<byte[], byte[]> e = it.next();
+                // block hashes may start with the prefix as well
+                if (e.getKey().length != LEVEL_KEY_LENGTH) continue;
+
+                // later generations come last and replace the earlier levels
+                long number = byteArrayToLong(copyOfRange(e.getKey(), LEVEL_KEY_LENGTH - 8, LEVEL_KEY_LENGTH));
+                index.put(number, decodeLevel(e.getValue()));
+                rows.put(e.getKey(), null);
+            }
+        }
+
+        if (rows.isEmpty()) return;
+
+        if (indexDB != null) {
+            indexDB.commit();
+        }
+        blocks.updateBatch(rows);
+
+        logger.info("Block index recovered: {} levels", rows.size());
     }
 
     public void setSessionFactory(SessionFactory sessionFactory){
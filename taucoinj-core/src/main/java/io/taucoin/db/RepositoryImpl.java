@@ -2,7 +2,9 @@ package io.taucoin.db;
 
 import io.taucoin.core.AccountState;
 import io.taucoin.core.Repository;
+import io.taucoin.core.TransactionInfo;
 import io.taucoin.datasource.KeyValueDataSource;
+import io.taucoin.datasource.KeyValueIterator;
 import io.taucoin.util.Functional;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,11 +13,15 @@ import org.spongycastle.util.encoders.Hex;
 import javax.annotation.Nonnull;
 import java.math.BigInteger;
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
-import static java.lang.Thread.sleep;
+import static io.taucoin.config.SystemProperties.CONFIG;
 import static io.taucoin.crypto.SHA3Helper.sha3;
+import static io.taucoin.util.ByteUtil.longToBytes;
+import static io.taucoin.util.ByteUtil.merge;
+import static io.taucoin.util.ByteUtil.prefixUpperBound;
 import static io.taucoin.util.ByteUtil.wrap;
 
 /**
@@ -28,13 +34,28 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
 
     public final static String STATE_DB = "state";
 
+    private static final int ADDRESS_LENGTH = 20;
+
+    // marks the state db as having the history moved out of the account records
+    private static final byte[] HISTORY_FORMAT_KEY = "historyFormat".getBytes();
+    private static final byte HISTORY_FORMAT = 1;
+    // rows written per batch while migrating, an account is never split
+    private static final int MIGRATION_BATCH_ROWS = 4096;
+
+    // hash of the block the stored state belongs to, written with every commit
+    private static final byte[] BLOCK_HASH_KEY = "blockHash".getBytes();
+
     private static final Logger logger = LoggerFactory.getLogger("repository");
     private static final Logger gLogger = LoggerFactory.getLogger("general");
 
     private KeyValueDataSource stateDB = null;
 
-    private final ReentrantLock lock = new ReentrantLock();
-    private final AtomicInteger accessCounter = new AtomicInteger();
+    private final AccountStateCache accountCache = new AccountStateCache(CONFIG.cacheStateSize());
+
+    // readers share the state DB, reset/close take it exclusively
+    private final ReentrantReadWriteLock accessLock = new ReentrantReadWriteLock();
+    private final AtomicLong readContention = new AtomicLong();
+    private final AtomicLong writeContention = new AtomicLong();
 
     public RepositoryImpl() {
     }
@@ -44,6 +65,46 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
         stateDS.setName(STATE_DB);
         stateDS.init();
         this.stateDB = stateDS;
+
+        migrateHistory();
+    }
+
+    /**
+     * Moves the history embedded in account records of the old format
+     * to the history keyspace, done once for the whole state db. <br>
+     * Accounts are written in bounded batches together with their history
+     * and the marker goes last, a migration cut short is picked up by the
+     * next start as migrated records aren't of the old format any more.
+     */
+    private void migrateHistory() {
+        if (stateDB.get(HISTORY_FORMAT_KEY) != null) return;
+
+        Map<byte[], byte[]> rows = new HashMap<>();
+        int accounts = 0;
+        KeyValueIterator iterator = stateDB.iterator(null, null, false);
+        try {
+            while (iterator.hasNext()) {
+                Map.Entry<byte[], byte[]> entry = iterator.next();
+                byte[] addr = entry.getKey();
+                if (addr.length != ADDRESS_LENGTH || !AccountState.isLegacyEncoded(entry.getValue())) continue;
+
+                AccountState accountState = new AccountState(entry.getValue());
+                rows.put(addr, accountState.getEncoded());
+                addHistoryRows(addr, accountState, rows);
+                ++accounts;
+
+                if (rows.size() >= MIGRATION_BATCH_ROWS) {
+                    stateDB.updateBatch(rows);
+                    rows.clear();
+                }
+            }
+        } finally {
+            iterator.close();
+        }
+
+        if (!rows.isEmpty()) stateDB.updateBatch(rows);
+        stateDB.put(HISTORY_FORMAT_KEY, new byte[] {HISTORY_FORMAT});
+        logger.info("Account history migrated: {} accounts", accounts);
     }
 
     @Override
@@ -67,6 +128,7 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
                 if (stateDB != null) {
                     stateDB.close();
                 }
+                accountCache.invalidateAll();
             }
         });
     }
@@ -78,20 +140,29 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
 
     @Override
     public void updateBatch(HashMap<ByteArrayWrapper, AccountState> stateCache) {
+        updateBatch(stateCache, null);
+    }
+
+    @Override
+    public void updateBatch(final HashMap<ByteArrayWrapper, AccountState> stateCache, byte[] blockHash) {
 
         logger.info("updatingBatch: stateCache.size: {}", stateCache.size());
 
+        final Map<byte[], byte[]> rows = new HashMap<>(stateCache.size());
+        final List<byte[]> deleted = new ArrayList<>();
         for (ByteArrayWrapper hash : stateCache.keySet()) {
 
             AccountState accountState = stateCache.get(hash);
 
             if (accountState.isDeleted()) {
-                delete(hash.getData());
+                rows.put(hash.getData(), null);
+                deleted.add(hash.getData());
                 logger.debug("delete: [{}]",
                         Hex.toHexString(hash.getData()));
 
             } else {
-                updateAccountState(hash.getData(), accountState);
+                rows.put(hash.getData(), accountState.getEncoded());
+                addHistoryRows(hash.getData(), accountState, rows);
 
                 if (logger.isDebugEnabled()) {
                     logger.debug("update: [{}],forgePower: [{}] balance: [{}] \n",
@@ -101,13 +172,78 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
                 }
             }
         }
+        if (blockHash != null) {
+            rows.put(BLOCK_HASH_KEY, blockHash);
+        }
 
+        doWithAccessCounting(new Functional.InvokeWrapper() {
+            @Override
+            public void invoke() {
+                for (byte[] addr : deleted) {
+                    addDeletedHistoryRows(addr, rows);
+                }
+                stateDB.updateBatch(rows);
+                for (ByteArrayWrapper addr : stateCache.keySet()) {
+                    accountCache.invalidate(addr.getData());
+                }
+            }
+        });
 
-        logger.info("updated: stateCache.size: {}", stateCache.size());
+        logger.info("updated: stateCache.size: {}, {}", stateCache.size(), accountCache);
 
         stateCache.clear();
     }
 
+    private static void addHistoryRows(byte[] addr, AccountState accountState, Map<byte[], byte[]> rows) {
+        for (ByteArrayWrapper key : accountState.getRemovedHistory().keySet()) {
+            rows.put(merge(addr, key.getData()), null);
+        }
+        for (Map.Entry<ByteArrayWrapper, TransactionInfo> entry : accountState.getAddedHistory().entrySet()) {
+            rows.put(merge(addr, entry.getKey().getData()), entry.getValue().getEncoded());
+        }
+    }
+
+    private void addDeletedHistoryRows(byte[] addr, Map<byte[], byte[]> rows) {
+        KeyValueIterator iterator = stateDB.iterator(historyKey(addr, 0), prefixUpperBound(addr), false);
+        try {
+            while (iterator.hasNext()) {
+                rows.put(iterator.next().getKey(), null);
+            }
+        } finally {
+            iterator.close();
+        }
+    }
+
+    /**
+     * History entries share the state db with accounts, their keys are
+     * the account address followed by the transaction time and hash
+     */
+    private static byte[] historyKey(byte[] addr, long time) {
+        return merge(addr, longToBytes(time));
+    }
+
+    @Override
+    public List<TransactionInfo> getTransactionHistory(final byte[] addr, final long fromTime,
+                                                       final long toTime, final int limit) {
+        return doWithAccessCounting(new Functional.InvokeWrapperWithResult<List<TransactionInfo>>() {
+            @Override
+            public List<TransactionInfo> invoke() {
+                List<TransactionInfo> result = new ArrayList<>();
+                if (limit <= 0 || fromTime >= toTime) return result;
+
+                KeyValueIterator iterator = stateDB.iterator(historyKey(addr, fromTime), historyKey(addr, toTime), false);
+                try {
+                    while (iterator.hasNext() && result.size() < limit) {
+                        result.add(new TransactionInfo(iterator.next().getValue()));
+                    }
+                } finally {
+                    iterator.close();
+                }
+                return result;
+            }
+        });
+    }
+
     @Override
     public void flush() {
         doWithLockedAccess(new Functional.InvokeWrapper() {
@@ -128,6 +264,21 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
         throw new UnsupportedOperationException();
     }
 
+    @Override
+    public void commit(byte[] blockHash) {
+        throw new UnsupportedOperationException();
+    }
+
+    @Override
+    public byte[] getBlockHash() {
+        return doWithAccessCounting(new Functional.InvokeWrapperWithResult<byte[]>() {
+            @Override
+            public byte[] invoke() {
+                return stateDB.get(BLOCK_HASH_KEY);
+            }
+        });
+    }
+
     @Override
     public Repository startTracking() {
         return new RepositoryTrack(this);
@@ -155,9 +306,19 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
         return getAccountStateOrCreateNew(addr).getforgePower();
     }
 
+    /**
+     * Returns a private copy of the account to be modified,
+     * cached instances are shared by readers and must stay untouched
+     */
     @Nonnull
-    private AccountState getAccountStateOrCreateNew(byte[] addr) {
-        AccountState account = getAccountState(addr);
+    private AccountState getAccountStateOrCreateNew(final byte[] addr) {
+        AccountState account = doWithAccessCounting(new Functional.InvokeWrapperWithResult<AccountState>() {
+            @Override
+            public AccountState invoke() {
+                byte[] accountData = stateDB.get(addr);
+                return accountData == null ? null : new AccountState(accountData);
+            }
+        });
         return (account == null) ? createAccount(addr) : account;
     }
 
@@ -181,11 +342,17 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
         return account.getforgePower();
     }
 
+    /**
+     * The cache gets its own copy, the caller keeps the given instance
+     * and may go on changing it without the lock
+     */
     private void updateAccountState(final byte[] addr, final AccountState accountState) {
+        final AccountState cached = accountState.clone();
         doWithAccessCounting(new Functional.InvokeWrapper() {
             @Override
             public void invoke() {
-                stateDB.put(addr, accountState.getEncoded());
+                stateDB.put(addr, cached.getEncoded());
+                accountCache.put(addr, cached);
             }
         });
     }
@@ -205,20 +372,30 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
             @Override
             public void invoke() {
                 stateDB.delete(addr);
+                accountCache.invalidate(addr);
             }
         });
     }
 
+    /**
+     * The state may be the cached instance shared by all the readers,
+     * it must not be changed, {@link #loadAccount} gives a private copy
+     */
     @Override
     public AccountState getAccountState(final byte[] addr) {
         return doWithAccessCounting(new Functional.InvokeWrapperWithResult<AccountState>() {
             @Override
             public AccountState invoke() {
-                AccountState result = null;
+                AccountState result = accountCache.get(addr);
+                if (result != null) return result;
+
+                long stamp = accountCache.stamp();
                 byte[] accountData = stateDB.get(addr);
 
-                if (accountData != null)
+                if (accountData != null) {
                     result = new AccountState(accountData);
+                    accountCache.fill(addr, result, stamp);
+                }
 
                 return result;
             }
@@ -252,19 +429,15 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
     }
 
     private void doWithLockedAccess(Functional.InvokeWrapper wrapper) {
-        lock.lock();
-        try {
-            while (accessCounter.get() > 0) {
-                if (logger.isDebugEnabled()) {
-                    logger.debug("waiting for access ...");
-                }
-                try {
-                    sleep(100);
-                } catch (InterruptedException e) {
-                    logger.error("Error occurred during access waiting: ", e);
-                }
+        Lock lock = accessLock.writeLock();
+        if (!lock.tryLock()) {
+            writeContention.incrementAndGet();
+            if (logger.isDebugEnabled()) {
+                logger.debug("waiting for access, readers: {}", accessLock.getReadLockCount());
             }
-
+            lock.lock();
+        }
+        try {
             wrapper.invoke();
         } finally {
             lock.unlock();
@@ -272,21 +445,18 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
     }
 
     public <R> R doWithAccessCounting(Functional.InvokeWrapperWithResult<R> wrapper) {
-        while (lock.isLocked()) {
+        Lock lock = accessLock.readLock();
+        if (!lock.tryLock()) {
+            readContention.incrementAndGet();
             if (logger.isDebugEnabled()) {
                 logger.debug("waiting for lock releasing ...");
             }
-            try {
-                sleep(100);
-            } catch (InterruptedException e) {
-                logger.error("Error occurred during locked access waiting: ", e);
-            }
+            lock.lock();
         }
-        accessCounter.incrementAndGet();
         try {
             return wrapper.invoke();
         } finally {
-            accessCounter.decrementAndGet();
+            lock.unlock();
         }
     }
 
@@ -300,4 +470,21 @@ public class RepositoryImpl implements io.taucoin.facade.Repository{
         });
     }
 
+    public AccountStateCache getAccountCache() {
+        return accountCache;
+    }
+
+    /**
+     * @return number of state reads that had to wait for reset/close
+     */
+    public long getReadContentionCount() {
+        return readContention.get();
+    }
+
+    /**
+     * @return number of reset/close calls that had to wait for readers to drain
+     */
+    public long getWriteContentionCount() {
+        return writeContention.get();
+    }
 }
@@ -3,6 +3,7 @@ package io.taucoin.db;
 import io.taucoin.core.AccountState;
 import io.taucoin.core.Block;
 import io.taucoin.core.Repository;
+import io.taucoin.core.TransactionInfo;
 
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,14 +12,18 @@ import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Set;
+import java.util.TreeMap;
 
 import static io.taucoin.crypto.HashUtil.EMPTY_DATA_HASH;
 import static io.taucoin.crypto.HashUtil.EMPTY_TRIE_HASH;
 import static io.taucoin.crypto.SHA3Helper.sha3;
 import static io.taucoin.util.ByteUtil.EMPTY_BYTE_ARRAY;
+import static io.taucoin.util.ByteUtil.longToBytes;
 import static io.taucoin.util.ByteUtil.wrap;
 
 /**
@@ -33,6 +38,9 @@ public class RepositoryTrack implements Repository {
 
     Repository repository;
 
+    // block the tracked changes are committed by, passed on to the parent
+    private byte[] blockHash;
+
     public RepositoryTrack(Repository repository) {
         this.repository = repository;
     }
@@ -170,6 +178,36 @@ public class RepositoryTrack implements Repository {
     }
 
 
+    @Override
+    public List<TransactionInfo> getTransactionHistory(byte[] addr, long fromTime, long toTime, int limit) {
+
+        if (limit <= 0) return new ArrayList<>();
+
+        AccountState accountState = cacheAccounts.get(wrap(addr));
+        if (accountState == null) return repository.getTransactionHistory(addr, fromTime, toTime, limit);
+
+        TreeMap<ByteArrayWrapper, TransactionInfo> removed = accountState.getRemovedHistory();
+        TreeMap<ByteArrayWrapper, TransactionInfo> merged = new TreeMap<>();
+
+        if (!accountState.isDeleted()) {
+            // entries removed here may hide some of the stored ones
+            int storedLimit = (int) Math.min((long) limit + removed.size(), Integer.MAX_VALUE);
+            for (TransactionInfo info : repository.getTransactionHistory(addr, fromTime, toTime, storedLimit)) {
+                ByteArrayWrapper key = new ByteArrayWrapper(info.getKey());
+                if (!removed.containsKey(key)) merged.put(key, info);
+            }
+        }
+        merged.putAll(accountState.getAddedHistory().subMap(
+                new ByteArrayWrapper(longToBytes(fromTime)), new ByteArrayWrapper(longToBytes(toTime))));
+
+        List<TransactionInfo> result = new ArrayList<>(Math.min(limit, merged.size()));
+        for (TransactionInfo info : merged.values()) {
+            if (result.size() >= limit) break;
+            result.add(info);
+        }
+        return result;
+    }
+
     public Set<ByteArrayWrapper> getFullAddressSet() {
         return cacheAccounts.keySet();
     }
@@ -191,17 +229,29 @@ public class RepositoryTrack implements Repository {
 
     @Override
     public void commit() {
+        commit(blockHash);
+    }
+
+    @Override
+    public void commit(byte[] blockHash) {
 
-        repository.updateBatch(cacheAccounts);
+        repository.updateBatch(cacheAccounts, blockHash);
         cacheAccounts.clear();
+        this.blockHash = null;
         logger.debug("committed changes");
     }
 
+    @Override
+    public byte[] getBlockHash() {
+        return blockHash != null ? blockHash : repository.getBlockHash();
+    }
+
     @Override
     public void rollback() {
         logger.debug("rollback changes");
 
         cacheAccounts.clear();
+        blockHash = null;
     }
 
     @Override
@@ -212,6 +262,13 @@ public class RepositoryTrack implements Repository {
         }
     }
 
+    @Override
+    public void updateBatch(HashMap<ByteArrayWrapper, AccountState> accountStates, byte[] blockHash) {
+
+        updateBatch(accountStates);
+        if (blockHash != null) this.blockHash = blockHash;
+    }
+
     @Override
     public boolean isClosed() {
         throw new UnsupportedOperationException();
@@ -10,10 +10,12 @@ import io.taucoin.listener.EthereumListener;
 import io.taucoin.manager.AdminInfo;
 import io.taucoin.manager.BlockLoader;
 import io.taucoin.forge.BlockForger;
+import io.taucoin.net.WireTrace;
 import io.taucoin.net.client.PeerClient;
 import io.taucoin.net.peerdiscovery.PeerInfo;
 import io.taucoin.net.rlpx.Node;
 import io.taucoin.net.server.ChannelManager;
+import io.taucoin.net.submit.TransactionAdmission;
 
 import java.math.BigInteger;
 import java.net.InetAddress;
@@ -155,6 +157,17 @@ public interface Taucoin {
 
     ChannelManager getChannelManager();
 
+    /**
+     * @return - admission of transactions received from the net,
+     *           holds its queue and drop counters
+     */
+    TransactionAdmission getTransactionAdmission();
+
+    /**
+     * @return - counters of the messages sent and received by type
+     */
+    WireTrace getWireTrace();
+
     /**
      * @return - currently pending transactions received from the net
      */
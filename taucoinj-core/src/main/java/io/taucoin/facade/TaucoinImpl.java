@@ -9,6 +9,7 @@ import io.taucoin.manager.AdminInfo;
 import io.taucoin.manager.BlockLoader;
 import io.taucoin.manager.WorldManager;
 import io.taucoin.forge.BlockForger;
+import io.taucoin.net.WireTrace;
 import io.taucoin.net.client.PeerClient;
 import io.taucoin.net.peerdiscovery.PeerInfo;
 import io.taucoin.net.rlpx.Node;
@@ -16,6 +17,7 @@ import io.taucoin.net.server.ChannelManager;
 import io.taucoin.net.server.PeerServer;
 import io.taucoin.net.submit.NewBlockHeaderBroadcaster;
 import io.taucoin.net.submit.NewBlockHeaderTask;
+import io.taucoin.net.submit.TransactionAdmission;
 import io.taucoin.net.submit.TransactionExecutor;
 import io.taucoin.net.submit.TransactionTask;
 import io.taucoin.util.ByteUtil;
@@ -56,6 +58,12 @@ public class TaucoinImpl implements Taucoin {
     @Autowired
     ChannelManager channelManager;
 
+    @Autowired
+    TransactionAdmission txAdmission;
+
+    @Autowired
+    WireTrace wireTrace;
+
     @Autowired
     PeerServer peerServer;
 
@@ -301,6 +309,16 @@ public class TaucoinImpl implements Taucoin {
         return channelManager;
     }
 
+    @Override
+    public TransactionAdmission getTransactionAdmission() {
+        return txAdmission;
+    }
+
+    @Override
+    public WireTrace getWireTrace() {
+        return wireTrace;
+    }
+
     @Override
     public List<Transaction> getWireTransactions() {
         return worldManager.getPendingState().getWireTransactions();
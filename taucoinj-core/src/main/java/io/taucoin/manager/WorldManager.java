@@ -23,6 +23,7 @@ import javax.annotation.PreDestroy;
 import java.math.BigInteger;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.List;
 
 import static io.taucoin.crypto.HashUtil.EMPTY_TRIE_HASH;
 
@@ -151,8 +152,10 @@ public class WorldManager {
 
     public void loadBlockchain() {
 
-        if (!config.databaseReset())
+        if (!config.databaseReset()) {
             blockStore.load();
+            alignChainWithState();
+        }
 
         Block bestBlock = blockStore.getBestBlock();
         if (bestBlock == null) {
@@ -170,6 +173,8 @@ public class WorldManager {
             logger.info("blockStore class : {}",((Class) object).getName());
 
             blockStore.saveBlock(Genesis.getInstance(config), Genesis.getInstance(config).getCumulativeDifficulty(), true);
+            // the premine is in the state already, it mustn't be added twice
+            blockStore.flush();
             blockchain.setBestBlock(Genesis.getInstance(config));
             blockchain.setTotalDifficulty(Genesis.getInstance(config).getCumulativeDifficulty());
 
@@ -199,6 +204,64 @@ public class WorldManager {
     }
 
 
+    /**
+     * The state is committed with every block and records its hash, while
+     * the blocks are written out in background, so after a crash the state
+     * may be ahead of the stored chain. It is moved back over the lost
+     * blocks with their undo journals and header records, which the block
+     * store writes at once, and the stored chain is re-branched to the
+     * block the state ends up at. Nothing is done if the state is at the
+     * best stored block, as it is after a clean shutdown
+     */
+    private void alignChainWithState() {
+
+        byte[] stateBlockHash = repository.getBlockHash();
+        Block bestBlock = blockStore.getBestBlock();
+        if (stateBlockHash == null || bestBlock == null
+                || Arrays.equals(stateBlockHash, bestBlock.getHash()))
+            return;
+
+        byte[] hash = stateBlockHash;
+        int lost = 0;
+        Repository track = repository.startTracking();
+        while (!blockStore.isBlockExist(hash)) {
+            byte[] journal = blockStore.getUndoJournal(hash);
+            byte[] parentHash = blockStore.getBlockParentHash(hash);
+            if (journal == null || parentHash == null) {
+                track.rollback();
+                logger.error("State is at the block [{}] which can't be undone", Hex.toHexString(hash));
+                return;
+            }
+
+            new UndoJournal(journal).undo(track);
+            hash = parentHash;
+            ++lost;
+        }
+
+        if (lost > 0) {
+            track.commit(hash);
+            logger.warn("State moved back over {} lost blocks to the block [{}]", lost, Hex.toHexString(hash));
+        }
+
+        if (Arrays.equals(hash, bestBlock.getHash()))
+            return;
+
+        Block stateBlock = blockStore.getBlockByHash(hash);
+        List<Block> undoBlocks = new ArrayList<>();
+        List<Block> newBlocks = new ArrayList<>();
+        if (!blockStore.getForkBlocksInfo(stateBlock, undoBlocks, newBlocks)) {
+            logger.error("State block [{}] isn't connected to the stored chain", Hex.toHexString(hash));
+            return;
+        }
+
+        blockStore.reBranchBlocks(undoBlocks, newBlocks);
+        blockStore.flush();
+
+        logger.warn("Chain moved back from the block [{}] to the state block [{}], {} blocks undone",
+                Hex.toHexString(bestBlock.getHash()), Hex.toHexString(hash), undoBlocks.size());
+    }
+
+
     @PreDestroy
     public void close() {
         stopPeerDiscovery();
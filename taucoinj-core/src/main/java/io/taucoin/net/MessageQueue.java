@@ -2,7 +2,8 @@ package io.taucoin.net;
 
 import io.netty.channel.ChannelFutureListener;
 import io.netty.channel.ChannelHandlerContext;
-import io.taucoin.listener.EthereumListener;
+import io.taucoin.config.SystemProperties;
+import io.taucoin.listener.CompositeEthereumListener;
 import io.taucoin.net.message.Message;
 import io.taucoin.net.message.ReasonCode;
 import io.taucoin.net.p2p.DisconnectMessage;
@@ -14,9 +15,13 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Scope;
 import org.springframework.stereotype.Component;
 
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.*;
-import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static io.taucoin.net.message.StaticMessages.DISCONNECT_MESSAGE;
 
@@ -33,6 +38,15 @@ import static io.taucoin.net.message.StaticMessages.DISCONNECT_MESSAGE;
  * The following messages will not be answered:
  *      PONG, PEERS, HELLO, STATUS, TRANSACTIONS, BLOCKS
  *
+ * Up to a window of requests is kept on the wire, an answer covers the
+ * oldest request of its type and frees the slot for the next one. Messages
+ * which aren't answered are written as soon as the event loop gets to them,
+ * everything queued meanwhile goes out with a single flush.
+ * A request which isn't answered in time is resent a few times and then
+ * given up, so a silent peer can't hold the queue forever. Every resend
+ * may still be answered, such answers coming after the request is covered
+ * or given up are dropped instead of covering the next request of the type.
+ *
  * @author Roman Mandeleil
  */
 @Component
@@ -41,36 +55,70 @@ public class MessageQueue {
 
     private static final Logger logger = LoggerFactory.getLogger("net");
 
-    private static final ScheduledExecutorService timer = Executors.newScheduledThreadPool(4, new ThreadFactory() {
-        private AtomicInteger cnt = new AtomicInteger(0);
-        public Thread newThread(Runnable r) {
-            return new Thread(r, "MessageQueueTimer-" + cnt.getAndIncrement());
-        }
-    });
+    // how often the requests on the wire are checked for timeouts
+    private static final long TIMEOUT_CHECK_PERIOD = 1000;
+
+    // requests waiting for a slot of the window
+    private Queue<MessageRoundtrip> requestQueue = new ConcurrentLinkedQueue<>();
+    // messages which don't expect an answer
+    private Queue<Message> messageQueue = new ConcurrentLinkedQueue<>();
+    // requests sent and not answered yet, accessed by the event loop only
+    private List<MessageRoundtrip> inFlight = new LinkedList<>();
+    // answers still due to resent or given up requests, accessed by the event loop only
+    private List<LateAnswer> lateAnswers = new LinkedList<>();
+
+    private final AtomicBoolean drainScheduled = new AtomicBoolean(false);
+    private final AtomicLong requestId = new AtomicLong(0);
 
-    private Queue<MessageRoundtrip> messageQueue = new ConcurrentLinkedQueue<>();
-    private ChannelHandlerContext ctx = null;
+    private volatile ChannelHandlerContext ctx = null;
 
     @Autowired
-    EthereumListener ethereumListener;
-    boolean hasPing = false;
+    CompositeEthereumListener ethereumListener;
+
+    @Autowired
+    SystemProperties config;
+
+    volatile boolean hasPing = false;
     private ScheduledFuture<?> timerTask;
     private Channel channel;
 
+    private int window;
+    private long timeout;
+    private int retries;
+    private boolean trace;
+
+    private final Runnable drainTask = new Runnable() {
+        public void run() {
+            try {
+                drain();
+            } catch (Throwable t) {
+                logger.error("Unhandled exception", t);
+            }
+        }
+    };
+
     public MessageQueue() {
     }
 
     public void activate(ChannelHandlerContext ctx) {
+        this.window = config.peerRequestWindow();
+        this.timeout = config.peerRequestTimeout();
+        this.retries = config.peerRequestRetries();
+        this.trace = config.wireTrace();
         this.ctx = ctx;
-        timerTask = timer.scheduleAtFixedRate(new Runnable() {
+
+        timerTask = ctx.executor().scheduleAtFixedRate(new Runnable() {
             public void run() {
                 try {
-                    nudgeQueue();
+                    checkTimeouts();
                 } catch (Throwable t) {
                     logger.error("Unhandled exception", t);
                 }
             }
-        }, 10, 10, TimeUnit.MILLISECONDS);
+        }, TIMEOUT_CHECK_PERIOD, TIMEOUT_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+
+        // messages sent before the activation
+        scheduleDrain();
     }
 
     public void setChannel(Channel channel) {
@@ -83,7 +131,12 @@ public class MessageQueue {
             hasPing = true;
         }
 
-        messageQueue.add(new MessageRoundtrip(msg));
+        if (msg.getAnswerMessage() != null) {
+            requestQueue.add(new MessageRoundtrip(msg, requestId.incrementAndGet()));
+        } else {
+            messageQueue.add(msg);
+        }
+        scheduleDrain();
     }
 
     public void disconnect() {
@@ -99,60 +152,186 @@ public class MessageQueue {
         ctx.close();
     }
 
-    public void receivedMessage(Message msg) throws InterruptedException {
+    /**
+     * Covers the request the message answers
+     *
+     * @return the request or <code>null</code> if the message doesn't answer any
+     */
+    public Message receivedMessage(Message msg) throws InterruptedException {
 
-        ethereumListener.trace("[Recv: " + msg + "]");
+        if (trace)
+            ethereumListener.trace("[Recv: " + msg + "]");
 
-        if (messageQueue.peek() != null) {
-            MessageRoundtrip messageRoundtrip = messageQueue.peek();
-            Message waitingMessage = messageRoundtrip.getMsg();
+        if (dropLateAnswer(msg)) {
+            logger.trace("Late answer dropped: [{}]", msg.getClass());
+            return null;
+        }
 
-            if (waitingMessage instanceof PingMessage) hasPing = false;
+        // peer answers requests of one type in the order they were sent
+        Iterator<MessageRoundtrip> it = inFlight.iterator();
+        while (it.hasNext()) {
+            MessageRoundtrip messageRoundtrip = it.next();
+            Message waitingMessage = messageRoundtrip.getMsg();
 
-            if (waitingMessage.getAnswerMessage() != null
-                    && msg.getClass() == waitingMessage.getAnswerMessage()) {
+            if (msg.getClass() == waitingMessage.getAnswerMessage()) {
                 messageRoundtrip.answer();
-                logger.trace("Message round trip covered: [{}] ",
-                        messageRoundtrip.getMsg().getClass());
+                it.remove();
+                // the other copies on the wire are answered after this one
+                expectLateAnswers(waitingMessage, messageRoundtrip.getRetryTimes() - 1);
+                if (waitingMessage instanceof PingMessage) hasPing = false;
+
+                logger.trace("Message round trip covered: #{} [{}] ",
+                        messageRoundtrip.getId(), waitingMessage.getClass());
+                scheduleDrain();
+                return waitingMessage;
             }
         }
+        return null;
     }
 
-    private void removeAnsweredMessage(MessageRoundtrip messageRoundtrip) {
-        if (messageRoundtrip != null && messageRoundtrip.isAnswered())
-            messageQueue.remove();
-    }
+    private void scheduleDrain() {
+        ChannelHandlerContext ctx = this.ctx;
+        // not active yet, the activation drains the queue
+        if (ctx == null) return;
 
-    private void nudgeQueue() {
-        // remove last answered message on the queue
-        removeAnsweredMessage(messageQueue.peek());
-        // Now send the next message
-        sendToWire(messageQueue.peek());
+        if (drainScheduled.compareAndSet(false, true)) {
+            try {
+                ctx.executor().execute(drainTask);
+            } catch (RejectedExecutionException e) {
+                logger.debug("Channel event loop is shut down, message isn't sent");
+            }
+        }
     }
 
-    private void sendToWire(MessageRoundtrip messageRoundtrip) {
+    /**
+     * Writes everything the window lets out and flushes once,
+     * runs on the channel event loop
+     */
+    private void drain() {
+        drainScheduled.set(false);
 
-        if (messageRoundtrip != null && messageRoundtrip.getRetryTimes() == 0) {
-            // TODO: retry logic || messageRoundtrip.hasToRetry()){
+        boolean written = false;
 
-            Message msg = messageRoundtrip.getMsg();
+        Message msg;
+        while ((msg = messageQueue.poll()) != null) {
+            sendToWire(msg);
+            written = true;
+        }
+
+        while (inFlight.size() < window) {
+            MessageRoundtrip messageRoundtrip = requestQueue.poll();
+            if (messageRoundtrip == null) break;
+
+            sendToWire(messageRoundtrip.getMsg());
+            messageRoundtrip.incRetryTimes();
+            messageRoundtrip.saveTime();
+            inFlight.add(messageRoundtrip);
+            written = true;
+
+            logger.trace("Request sent: #{} [{}]", messageRoundtrip.getId(), messageRoundtrip.getMsg().getClass());
+        }
+
+        if (written) ctx.flush();
+    }
 
-            ethereumListener.onSendMessage(channel, msg);
+    private void checkTimeouts() {
+        boolean written = false;
+        boolean released = false;
 
-            ctx.writeAndFlush(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+        Iterator<MessageRoundtrip> it = inFlight.iterator();
+        while (it.hasNext()) {
+            MessageRoundtrip messageRoundtrip = it.next();
+            if (!messageRoundtrip.hasToRetry(timeout)) continue;
 
-            if (msg.getAnswerMessage() == null)
-                messageQueue.remove();
-            else {
+            Message msg = messageRoundtrip.getMsg();
+            if (messageRoundtrip.getRetryTimes() <= retries) {
+                logger.debug("Request #{} [{}] timed out, resending to {}",
+                        messageRoundtrip.getId(), msg.getClass().getSimpleName(), channel);
+                sendToWire(msg);
                 messageRoundtrip.incRetryTimes();
                 messageRoundtrip.saveTime();
+                written = true;
+            } else {
+                logger.debug("Request #{} [{}] isn't answered by {}, giving up",
+                        messageRoundtrip.getId(), msg.getClass().getSimpleName(), channel);
+                it.remove();
+                if (msg instanceof PingMessage) hasPing = false;
+                expectLateAnswers(msg, messageRoundtrip.getRetryTimes());
+                released = true;
+            }
+        }
+
+        dropLateAnswer(null);
+
+        if (written) ctx.flush();
+        if (released) scheduleDrain();
+    }
+
+    private void expectLateAnswers(Message request, long count) {
+        long deadline = System.currentTimeMillis() + timeout;
+        for (long i = 0; i < count; ++i) {
+            lateAnswers.add(new LateAnswer(request.getAnswerMessage(), deadline));
+        }
+    }
+
+    /**
+     * Forgets the late answers which are not expected any longer
+     * and takes the one the message is, if any
+     *
+     * @return true if the message answers a request covered or given up before
+     */
+    private boolean dropLateAnswer(Message msg) {
+        long now = System.currentTimeMillis();
+
+        Iterator<LateAnswer> it = lateAnswers.iterator();
+        while (it.hasNext()) {
+            LateAnswer lateAnswer = it.next();
+            if (lateAnswer.deadline < now) {
+                it.remove();
+            } else if (msg != null && msg.getClass() == lateAnswer.type) {
+                it.remove();
+                return true;
             }
         }
+        return false;
+    }
+
+    private void sendToWire(Message msg) {
+
+        ethereumListener.onSendMessage(channel, msg);
+
+        ctx.write(msg).addListener(ChannelFutureListener.FIRE_EXCEPTION_ON_FAILURE);
+    }
+
+    /**
+     * @return requests sent to the peer and not answered yet
+     */
+    public int getRequestsInFlight() {
+        return inFlight.size();
+    }
+
+    /**
+     * @return messages and requests waiting to be sent
+     */
+    public int getQueued() {
+        return requestQueue.size() + messageQueue.size();
     }
 
     public void close() {
         if (timerTask != null) {
             timerTask.cancel(false);
         }
+        requestQueue.clear();
+        messageQueue.clear();
+    }
+
+    private static class LateAnswer {
+        final Class<?> type;
+        final long deadline;
+
+        LateAnswer(Class<?> type, long deadline) {
+            this.type = type;
+            this.deadline = deadline;
+        }
     }
 }
@@ -13,15 +13,26 @@ import io.taucoin.net.message.Message;
 public class MessageRoundtrip {
 
     private final Message msg;
+    // sequence number of the request on its channel
+    private final long id;
     long lastTimestamp = 0;
     long retryTimes = 0;
     boolean answered = false;
 
     public MessageRoundtrip(Message msg) {
+        this(msg, 0);
+    }
+
+    public MessageRoundtrip(Message msg, long id) {
         this.msg = msg;
+        this.id = id;
         saveTime();
     }
 
+    public long getId() {
+        return id;
+    }
+
     public boolean isAnswered() {
         return answered;
     }
@@ -42,8 +53,8 @@ public class MessageRoundtrip {
         lastTimestamp = System.currentTimeMillis();
     }
 
-    public boolean hasToRetry() {
-        return 20000 < System.currentTimeMillis() - lastTimestamp;
+    public boolean hasToRetry(long timeout) {
+        return timeout < System.currentTimeMillis() - lastTimestamp;
     }
 
     public Message getMsg() {
@@ -0,0 +1,151 @@
+package io.taucoin.net;
+
+import io.taucoin.config.SystemProperties;
+import io.taucoin.listener.CompositeEthereumListener;
+import io.taucoin.net.message.Message;
+import io.taucoin.net.server.Channel;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts and logs messages going through the wire.
+ *
+ * Every message is counted by its type, the logging costs nothing
+ * unless the logger level or the peer.wire.trace switch asks for it. The
+ * 'net' log gets a short summary of every n-th message only,
+ * whole messages are rendered to the 'wire' log at debug level.
+ *
+ * @author taucoin core
+ * @since 15.07.2019
+ */
+@Component
+public class WireTrace {
+
+    private static final Logger loggerNet = LoggerFactory.getLogger("net");
+    private static final Logger loggerWire = LoggerFactory.getLogger("wire");
+
+    private final ConcurrentMap<Enum<?>, MessageStats> stats = new ConcurrentHashMap<>();
+    private final AtomicLong messages = new AtomicLong(0);
+
+    private int sampleRate = 1;
+    private boolean trace = false;
+
+    @Autowired
+    CompositeEthereumListener ethereumListener;
+
+    @Autowired
+    SystemProperties config;
+
+    @PostConstruct
+    public void init() {
+        sampleRate = Math.max(1, config.wireLogSample());
+        trace = config.wireTrace();
+    }
+
+    public void onRecv(Channel channel, Message msg, int size) {
+        getStats(msg).recv(size);
+
+        if (loggerNet.isInfoEnabled() && isSampled())
+            loggerNet.info("From: \t{} \tRecv: \t{}", channel, summary(msg, size));
+        if (loggerWire.isDebugEnabled())
+            loggerWire.debug("From: \t{} \tRecv: \t{}", channel, msg);
+    }
+
+    public void onSend(Channel channel, Message msg, int size) {
+        getStats(msg).send(size);
+
+        if (trace)
+            ethereumListener.trace("To: \t" + channel + " \tSend: \t" + msg);
+
+        if (loggerNet.isInfoEnabled() && isSampled())
+            loggerNet.info("To: \t{} \tSend: \t{}", channel, summary(msg, size));
+        if (loggerWire.isDebugEnabled())
+            loggerWire.debug("To: \t{} \tSend: \t{}", channel, msg);
+    }
+
+    /**
+     * @return counters of the messages seen so far by their type, keyed as
+     *         <code>P2pMessageCodes.PING</code>, as protocols share command names
+     */
+    public Map<String, MessageStats> getStats() {
+        Map<String, MessageStats> snapshot = new HashMap<>();
+        for (Map.Entry<Enum<?>, MessageStats> entry : stats.entrySet()) {
+            Enum<?> command = entry.getKey();
+            snapshot.put(command.getDeclaringClass().getSimpleName() + "." + command.name(), entry.getValue());
+        }
+        return Collections.unmodifiableMap(snapshot);
+    }
+
+    private MessageStats getStats(Message msg) {
+        Enum<?> command = msg.getCommand();
+        MessageStats messageStats = stats.get(command);
+        if (messageStats == null) {
+            MessageStats created = new MessageStats();
+            messageStats = stats.putIfAbsent(command, created);
+            if (messageStats == null) messageStats = created;
+        }
+        return messageStats;
+    }
+
+    private boolean isSampled() {
+        return sampleRate == 1 || messages.incrementAndGet() % sampleRate == 0;
+    }
+
+    // rendered by the logger only if the line gets logged
+    private static Object summary(final Message msg, final int size) {
+        return new Object() {
+            @Override
+            public String toString() {
+                return msg.getCommand() + " [size: " + size + "]";
+            }
+        };
+    }
+
+    public static class MessageStats {
+        private final AtomicLong recvCount = new AtomicLong(0);
+        private final AtomicLong recvBytes = new AtomicLong(0);
+        private final AtomicLong sendCount = new AtomicLong(0);
+        private final AtomicLong sendBytes = new AtomicLong(0);
+
+        void recv(int size) {
+            recvCount.incrementAndGet();
+            recvBytes.addAndGet(size);
+        }
+
+        void send(int size) {
+            sendCount.incrementAndGet();
+            sendBytes.addAndGet(size);
+        }
+
+        public long getRecvCount() {
+            return recvCount.get();
+        }
+
+        public long getRecvBytes() {
+            return recvBytes.get();
+        }
+
+        public long getSendCount() {
+            return sendCount.get();
+        }
+
+        public long getSendBytes() {
+            return sendBytes.get();
+        }
+
+        @Override
+        public String toString() {
+            return "recv: " + recvCount + " (" + recvBytes + " bytes), send: " + sendCount + " (" + sendBytes + " bytes)";
+        }
+    }
+}
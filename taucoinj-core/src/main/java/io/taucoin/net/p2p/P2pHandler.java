@@ -3,7 +3,7 @@ package io.taucoin.net.p2p;
 import io.taucoin.config.SystemProperties;
 import io.taucoin.core.Block;
 import io.taucoin.core.Transaction;
-import io.taucoin.listener.EthereumListener;
+import io.taucoin.listener.CompositeEthereumListener;
 import io.taucoin.manager.WorldManager;
 import io.taucoin.net.MessageQueue;
 import io.taucoin.net.client.Capability;
@@ -79,7 +79,7 @@ public class P2pHandler extends SimpleChannelInboundHandler<P2pMessage> {
     private int ethOutbound;
 
     @Autowired
-    EthereumListener ethereumListener;
+    CompositeEthereumListener ethereumListener;
 
     @Autowired
     PeerDiscovery peerDiscovery;
@@ -92,6 +92,7 @@ public class P2pHandler extends SimpleChannelInboundHandler<P2pMessage> {
 
     private Channel channel;
     private ScheduledFuture<?> pingTask;
+    private boolean trace;
 
 
     public P2pHandler() {
@@ -114,6 +115,7 @@ public class P2pHandler extends SimpleChannelInboundHandler<P2pMessage> {
     public void handlerAdded(ChannelHandlerContext ctx) throws Exception {
         logger.info("P2P protocol activated");
         msgQueue.activate(ctx);
+        trace = config.wireTrace();
         ethereumListener.trace("P2P protocol activated");
         startTimers();
     }
@@ -125,7 +127,8 @@ public class P2pHandler extends SimpleChannelInboundHandler<P2pMessage> {
         if (P2pMessageCodes.inRange(msg.getCommand().asByte()))
             logger.trace("P2PHandler invoke: [{}]", msg.getCommand());
 
-        ethereumListener.trace(String.format("P2PHandler invoke: [%s]", msg.getCommand()));
+        if (trace)
+            ethereumListener.trace("P2PHandler invoke: [" + msg.getCommand() + "]");
 
         switch (msg.getCommand()) {
             case HELLO:
@@ -1,8 +1,7 @@
 package io.taucoin.net.rlpx;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.buffer.ByteBufInputStream;
-import io.netty.buffer.ByteBufOutputStream;
+import io.netty.buffer.Unpooled;
 import io.taucoin.net.swarm.Util;
 import io.taucoin.util.RLP;
 import io.taucoin.util.RLPList;
@@ -12,7 +11,6 @@ import org.spongycastle.crypto.engines.AESFastEngine;
 import org.spongycastle.crypto.modes.SICBlockCipher;
 import org.spongycastle.crypto.params.KeyParameter;
 import org.spongycastle.crypto.params.ParametersWithIV;
-import org.spongycastle.util.encoders.Hex;
 
 import java.io.*;
 import java.util.ArrayList;
@@ -24,13 +22,44 @@ import static io.taucoin.util.RLP.decode2OneItem;
 
 /**
  * Created by devrandom on 2015-04-11.
+ *
+ * Frames are encrypted and MACed straight between the netty buffers
+ * and the message bytes, the only per frame allocation on the way in
+ * is the payload array handed to the message decoding.
  */
 public class FrameCodec {
+
+    private static final int HEADER_SIZE = 32;
+    private static final int MAC_SIZE = 16;
+
+    // frame type is an RLP encoded int
+    private static final int MAX_TYPE_SIZE = 5;
+
+    // chunk size used to encrypt into buffers which aren't backed by an array
+    private static final int ENCRYPT_CHUNK_SIZE = 4096;
+
     private final StreamCipher enc;
     private final StreamCipher dec;
     private final SHA3Digest egressMac;
     private final SHA3Digest ingressMac;
     private final byte[] mac;
+
+    // MAC ciphers are stateless but not thread safe, one per direction
+    private final AESFastEngine egressMacCipher;
+    private final AESFastEngine ingressMacCipher;
+
+    // scratch buffers reused by every frame, one set per direction
+    private final byte[] egressHead = new byte[HEADER_SIZE];
+    private final byte[] egressMacBlock = new byte[32];
+    private final byte[] egressMacResult = new byte[32];
+    private final byte[] egressChunk = new byte[ENCRYPT_CHUNK_SIZE];
+    private final byte[] ingressHead = new byte[HEADER_SIZE];
+    private final byte[] ingressMacBlock = new byte[32];
+    private final byte[] ingressMacResult = new byte[32];
+    private final byte[] ingressScratch = new byte[MAC_SIZE + 16];
+
+    private static final byte[] PADDING = new byte[16];
+
     boolean isHeadRead;
     private int totalBodySize;
     private int contextId = -1;
@@ -46,6 +75,8 @@ public class FrameCodec {
         dec.init(false, new ParametersWithIV(new KeyParameter(secrets.aes), new byte[blockSize / 8]));
         egressMac = secrets.egressMac;
         ingressMac = secrets.ingressMac;
+        egressMacCipher = makeMacCipher();
+        ingressMacCipher = makeMacCipher();
     }
 
     private AESFastEngine makeMacCipher() {
@@ -58,22 +89,21 @@ public class FrameCodec {
     public static class Frame {
         long type;
         int size;
-        InputStream payload;
+        byte[] data;
+        int offset;
 
         int totalFrameSize = -1;
         int contextId = -1;
 
-
-        public Frame(long type, int size, InputStream payload) {
+        public Frame(long type, byte[] data, int offset, int size) {
             this.type = type;
+            this.data = data;
+            this.offset = offset;
             this.size = size;
-            this.payload = payload;
         }
 
         public Frame(int type, byte[] payload) {
-            this.type = type;
-            this.size = payload.length;
-            this.payload = new ByteArrayInputStream(payload);
+            this(type, payload, 0, payload.length);
         }
 
         public int getSize() {
@@ -82,21 +112,30 @@ public class FrameCodec {
 
         public long getType() {return  type;}
 
+        /**
+         * @return array holding the payload starting at {@link #getOffset()}
+         */
+        public byte[] getData() {
+            return data;
+        }
+
+        public int getOffset() {
+            return offset;
+        }
+
         public InputStream getStream() {
-            return payload;
+            return new ByteArrayInputStream(data, offset, size);
         }
+
         public boolean isChunked() {
             return contextId >= 0;
         }
 
     }
 
-    public void writeFrame(Frame frame, ByteBuf buf) throws IOException {
-        writeFrame(frame, new ByteBufOutputStream(buf));
-    }
-
-    public void writeFrame(Frame frame, OutputStream out) throws IOException {
-        byte[] headBuffer = new byte[32];
+    public void writeFrame(Frame frame, ByteBuf out) throws IOException {
+        byte[] headBuffer = egressHead;
+        Arrays.fill(headBuffer, (byte) 0);
         byte[] ptype = RLP.encodeInt((int) frame.type); // FIXME encodeLong
         int totalSize = frame.size + ptype.length;
         headBuffer[0] = (byte)(totalSize >> 16);
@@ -114,112 +153,176 @@ public class FrameCodec {
         enc.processBytes(headBuffer, 0, 16, headBuffer, 0);
 
         // Header MAC
-        updateMac(egressMac, headBuffer, 0, headBuffer, 16, true);
-
-        byte[] buff = new byte[256];
-        out.write(headBuffer);
-        enc.processBytes(ptype, 0, ptype.length, buff, 0);
-        out.write(buff, 0, ptype.length);
-        egressMac.update(buff, 0, ptype.length);
-        while (true) {
-            int n = frame.payload.read(buff);
-            if (n <= 0) break;
-            enc.processBytes(buff, 0, n, buff, 0);
-            egressMac.update(buff, 0, n);
-            out.write(buff, 0, n);
-        }
+        updateMac(egressMac, egressMacCipher, egressMacBlock, egressMacResult, headBuffer, 0, headBuffer, 16, true);
+
         int padding = 16 - (totalSize % 16);
-        byte[] pad = new byte[16];
-        if (padding < 16) {
-            enc.processBytes(pad, 0, padding, buff, 0);
-            egressMac.update(buff, 0, padding);
-            out.write(buff, 0, padding);
-        }
+        if (padding == 16) padding = 0;
+        out.ensureWritable(HEADER_SIZE + totalSize + padding + MAC_SIZE);
+
+        out.writeBytes(headBuffer);
+        encryptTo(out, ptype, 0, ptype.length);
+        encryptTo(out, frame.data, frame.offset, frame.size);
+        encryptTo(out, PADDING, 0, padding);
 
         // Frame MAC
-        byte[] macBuffer = new byte[egressMac.getDigestSize()];
+        byte[] macBuffer = egressMacResult;
         doSum(egressMac, macBuffer); // fmacseed
-        updateMac(egressMac, macBuffer, 0, macBuffer, 0, true);
-        out.write(macBuffer, 0, 16);
+        updateMac(egressMac, egressMacCipher, egressMacBlock, egressMacResult, macBuffer, 0, macBuffer, 0, true);
+        out.writeBytes(macBuffer, 0, MAC_SIZE);
     }
 
+    public void writeFrame(Frame frame, OutputStream out) throws IOException {
+        ByteBuf buf = Unpooled.buffer();
+        try {
+            writeFrame(frame, buf);
+            buf.readBytes(out, buf.readableBytes());
+        } finally {
+            buf.release();
+        }
+    }
+
+    /**
+     * Encrypts the bytes right into the buffer and feeds the cipher text to the egress MAC
+     */
+    private void encryptTo(ByteBuf out, byte[] src, int offset, int length) {
+        if (out.hasArray()) {
+            byte[] dst = out.array();
+            int dstOffset = out.arrayOffset() + out.writerIndex();
+            enc.processBytes(src, offset, length, dst, dstOffset);
+            egressMac.update(dst, dstOffset, length);
+            out.writerIndex(out.writerIndex() + length);
+            return;
+        }
+
+        while (length > 0) {
+            int n = Math.min(length, egressChunk.length);
+            enc.processBytes(src, offset, n, egressChunk, 0);
+            egressMac.update(egressChunk, 0, n);
+            out.writeBytes(egressChunk, 0, n);
+            offset += n;
+            length -= n;
+        }
+    }
+
+    /**
+     * Reads a frame if the buffer holds all of it, leaves
+     * the buffer untouched otherwise
+     */
     public List<Frame> readFrames(ByteBuf buf) throws IOException {
-        return readFrames(new ByteBufInputStream(buf));
+        if (!isHeadRead) {
+            if (buf.readableBytes() < HEADER_SIZE) return null;
+            buf.readBytes(ingressHead);
+            readHeader(ingressHead);
+        }
+
+        if (buf.readableBytes() < bodySize()) return null;
+        return Collections.singletonList(readBody(buf));
     }
 
     public List<Frame> readFrames(DataInput inp) throws IOException {
         if (!isHeadRead) {
-            byte[] headBuffer = new byte[32];
             try {
-                inp.readFully(headBuffer);
+                inp.readFully(ingressHead);
             } catch (EOFException e) {
                 return null;
             }
+            readHeader(ingressHead);
+        }
 
-            // Header MAC
-            updateMac(ingressMac, headBuffer, 0, headBuffer, 16, false);
-
-            dec.processBytes(headBuffer, 0, 16, headBuffer, 0);
-            totalBodySize = headBuffer[0];
-            totalBodySize = (totalBodySize << 8) + (headBuffer[1] & 0xFF);
-            totalBodySize = (totalBodySize << 8) + (headBuffer[2] & 0xFF);
-
-            RLPList rlpList = (RLPList) decode2OneItem(headBuffer, 3);
+        byte[] body = new byte[bodySize()];
+        try {
+            inp.readFully(body);
+        } catch (EOFException e) {
+            return null;
+        }
+        return Collections.singletonList(readBody(Unpooled.wrappedBuffer(body)));
+    }
 
-            protocol = Util.rlpDecodeInt(rlpList.get(0));
-            contextId = -1;
-            totalFrameSize = -1;
-            if (rlpList.size() > 1) {
-                contextId = Util.rlpDecodeInt(rlpList.get(1));
-                if (rlpList.size() > 2) {
-                    totalFrameSize = Util.rlpDecodeInt(rlpList.get(2));
-                }
+    private void readHeader(byte[] headBuffer) throws IOException {
+        // Header MAC
+        updateMac(ingressMac, ingressMacCipher, ingressMacBlock, ingressMacResult, headBuffer, 0, headBuffer, 16, false);
+
+        dec.processBytes(headBuffer, 0, 16, headBuffer, 0);
+        totalBodySize = headBuffer[0];
+        totalBodySize = (totalBodySize << 8) + (headBuffer[1] & 0xFF);
+        totalBodySize = (totalBodySize << 8) + (headBuffer[2] & 0xFF);
+
+        RLPList rlpList = (RLPList) decode2OneItem(headBuffer, 3);
+
+        protocol = Util.rlpDecodeInt(rlpList.get(0));
+        contextId = -1;
+        totalFrameSize = -1;
+        if (rlpList.size() > 1) {
+            contextId = Util.rlpDecodeInt(rlpList.get(1));
+            if (rlpList.size() > 2) {
+                totalFrameSize = Util.rlpDecodeInt(rlpList.get(2));
             }
-
-            isHeadRead = true;
         }
 
+        isHeadRead = true;
+    }
+
+    private int bodySize() {
         int padding = 16 - (totalBodySize % 16);
         if (padding == 16) padding = 0;
-        int macSize = 16;
-        byte[] buffer = new byte[totalBodySize + padding + macSize];
-        try {
-            inp.readFully(buffer);
-        } catch (EOFException e) {
-            return null;
-        }
-        int frameSize = buffer.length - macSize;
-        ingressMac.update(buffer, 0, frameSize);
-        dec.processBytes(buffer, 0, frameSize, buffer, 0);
-        int pos = 0;
-        long type = RLP.decodeInt(buffer, pos); // FIXME long
-        pos = RLP.getNextElementIndex(buffer, pos);
-        InputStream payload = new ByteArrayInputStream(buffer, pos, totalBodySize - pos);
-        int size = totalBodySize - pos;
-        byte[] macBuffer = new byte[ingressMac.getDigestSize()];
+        return totalBodySize + padding + MAC_SIZE;
+    }
+
+    private Frame readBody(ByteBuf buf) throws IOException {
+        if (totalBodySize < 1) throw new IOException("Empty frame body");
+
+        int padding = bodySize() - totalBodySize - MAC_SIZE;
+        byte[] scratch = ingressScratch;
+
+        // frame type goes first, its first byte tells its length
+        decryptFrom(buf, scratch, 0, 1);
+        int typeHead = scratch[0] & 0xFF;
+        int typeSize = typeHead < 0x80 ? 1 : 1 + typeHead - 0x80;
+        if (typeSize > MAX_TYPE_SIZE || typeSize > totalBodySize)
+            throw new IOException("Malformed frame type");
+        decryptFrom(buf, scratch, 1, typeSize - 1);
+        long type = RLP.decodeInt(scratch, 0); // FIXME long
+
+        int size = totalBodySize - typeSize;
+        byte[] payload = new byte[size];
+        decryptFrom(buf, payload, 0, size);
+
+        // keeps the cipher in step with the sender
+        decryptFrom(buf, scratch, 0, padding);
 
         // Frame MAC
+        buf.readBytes(scratch, 0, MAC_SIZE);
+        byte[] macBuffer = ingressMacResult;
         doSum(ingressMac, macBuffer); // fmacseed
-        updateMac(ingressMac, macBuffer, 0, buffer, frameSize, false);
+        updateMac(ingressMac, ingressMacCipher, ingressMacBlock, ingressMacResult, macBuffer, 0, scratch, 0, false);
 
         isHeadRead = false;
-        Frame frame = new Frame(type, size, payload);
+        Frame frame = new Frame(type, payload, 0, size);
         frame.contextId = contextId;
         frame.totalFrameSize = totalFrameSize;
-        return Collections.singletonList(frame);
+        return frame;
+    }
+
+    /**
+     * Copies cipher text from the buffer, feeds it to the ingress MAC and decrypts it in place
+     */
+    private void decryptFrom(ByteBuf buf, byte[] dst, int offset, int length) {
+        if (length == 0) return;
+        buf.readBytes(dst, offset, length);
+        ingressMac.update(dst, offset, length);
+        dec.processBytes(dst, offset, length, dst, offset);
     }
 
-    private byte[] updateMac(SHA3Digest mac, byte[] seed, int offset, byte[] out, int outOffset, boolean egress) throws IOException {
-        byte[] aesBlock = new byte[mac.getDigestSize()];
+    private void updateMac(SHA3Digest mac, AESFastEngine macCipher, byte[] aesBlock, byte[] result,
+                           byte[] seed, int offset, byte[] out, int outOffset, boolean egress) throws IOException {
         doSum(mac, aesBlock);
-        makeMacCipher().processBlock(aesBlock, 0, aesBlock, 0);
+        macCipher.processBlock(aesBlock, 0, aesBlock, 0);
         // Note that although the mac digest size is 32 bytes, we only use 16 bytes in the computation
         int length = 16;
         for (int i = 0; i < length; i++) {
             aesBlock[i] ^= seed[i + offset];
         }
         mac.update(aesBlock, 0, length);
-        byte[] result = new byte[mac.getDigestSize()];
         doSum(mac, result);
         if (egress) {
             for (int i = 0; i < length; i++) {
@@ -232,7 +335,6 @@ public class FrameCodec {
                 }
             }
         }
-        return result;
     }
 
     private void doSum(SHA3Digest mac, byte[] out) {
@@ -1,11 +1,11 @@
 package io.taucoin.net.rlpx;
 
-import com.google.common.io.ByteStreams;
 import io.netty.channel.ChannelHandlerContext;
 import io.netty.handler.codec.MessageToMessageCodec;
 import org.apache.commons.lang3.tuple.Pair;
 import io.taucoin.config.SystemProperties;
-import io.taucoin.listener.EthereumListener;
+import io.taucoin.listener.CompositeEthereumListener;
+import io.taucoin.net.WireTrace;
 import io.taucoin.net.client.Capability;
 import io.taucoin.net.tau.TauVersion;
 import io.taucoin.net.tau.message.TauMessageCodes;
@@ -53,7 +53,10 @@ public class MessageCodec extends MessageToMessageCodec<Frame, Message> {
     private TauVersion ethVersion;
 
     @Autowired
-    EthereumListener ethereumListener;
+    CompositeEthereumListener ethereumListener;
+
+    @Autowired
+    WireTrace wireTrace;
 
     @Autowired
     SystemProperties config;
@@ -101,7 +104,7 @@ public class MessageCodec extends MessageToMessageCodec<Frame, Message> {
             int curSize = frameParts.getRight().addAndGet(frame.size);
 
             if (loggerWire.isDebugEnabled())
-                loggerWire.debug("Recv: Chunked (" + curSize + " of " + frameParts.getLeft().get(0).totalFrameSize + ") [size: " + frame.getSize() + "]");
+                loggerWire.debug("Recv: Chunked ({} of {}) [size: {}]", curSize, frameParts.getLeft().get(0).totalFrameSize, frame.getSize());
 
             if (curSize > frameParts.getLeft().get(0).totalFrameSize) {
                 loggerNet.warn("The total frame chunks size (" + curSize + ") is greater than expected (" + frameParts.getLeft().get(0).totalFrameSize + "). Discarding the frame.");
@@ -122,19 +125,26 @@ public class MessageCodec extends MessageToMessageCodec<Frame, Message> {
     private Message decodeMessage(ChannelHandlerContext ctx, List<Frame> frames) throws IOException {
         long frameType = frames.get(0).getType();
 
-        byte[] payload = new byte[frames.size() == 1 ? frames.get(0).getSize() : frames.get(0).totalFrameSize];
-        int pos = 0;
-        for (Frame frame : frames) {
-            pos += ByteStreams.read(frame.getStream(), payload, pos, frame.getSize());
+        byte[] payload;
+        Frame first = frames.get(0);
+        if (frames.size() == 1 && first.getOffset() == 0 && first.getSize() == first.getData().length) {
+            // decoded frame owns its payload
+            payload = first.getData();
+        } else {
+            payload = new byte[frames.size() == 1 ? first.getSize() : first.totalFrameSize];
+            int pos = 0;
+            for (Frame frame : frames) {
+                System.arraycopy(frame.getData(), frame.getOffset(), payload, pos, frame.getSize());
+                pos += frame.getSize();
+            }
         }
 
-        if (loggerWire.isDebugEnabled())
-            loggerWire.debug("Recv: Encoded: {} [{}]", frameType, Hex.toHexString(payload));
+        if (loggerWire.isTraceEnabled())
+            loggerWire.trace("Recv: Encoded: {} [{}]", frameType, Hex.toHexString(payload));
 
         Message msg = createMessage((byte) frameType, payload);
 
-        if (loggerNet.isInfoEnabled())
-            loggerNet.info("From: \t{} \tRecv: \t{}", channel, msg.toString());
+        wireTrace.onRecv(channel, msg, payload.length);
 
         ethereumListener.onRecvMessage(channel, msg);
 
@@ -144,34 +154,28 @@ public class MessageCodec extends MessageToMessageCodec<Frame, Message> {
 
     @Override
     protected void encode(ChannelHandlerContext ctx, Message msg, List<Object> out) throws Exception {
-        String output = String.format("To: \t%s \tSend: \t%s", ctx.channel().remoteAddress(), msg);
-        ethereumListener.trace(output);
-
-        if (loggerNet.isInfoEnabled())
-            loggerNet.info("To: \t{} \tSend: \t{}", channel, msg);
-
         byte[] encoded = msg.getEncoded();
 
-        if (loggerWire.isDebugEnabled())
-            loggerWire.debug("Send: Encoded: {} [{}]", getCode(msg.getCommand()), Hex.toHexString(encoded));
+        wireTrace.onSend(channel, msg, encoded.length);
+
+        if (loggerWire.isTraceEnabled())
+            loggerWire.trace("Send: Encoded: {} [{}]", getCode(msg.getCommand()), Hex.toHexString(encoded));
 
-        List<Frame> frames = splitMessageToFrames(msg);
+        List<Frame> frames = splitMessageToFrames(msg, encoded);
 
         out.addAll(frames);
 
         channel.getNodeStatistics().rlpxOutMessages.add();
     }
 
-    private List<Frame> splitMessageToFrames(Message msg) {
+    private List<Frame> splitMessageToFrames(Message msg, byte[] bytes) {
         byte code = getCode(msg.getCommand());
         List<Frame> ret = new ArrayList<>();
-        byte[] bytes = msg.getEncoded();
         int curPos = 0;
         while(curPos < bytes.length) {
             int newPos = min(curPos + maxFramePayloadSize, bytes.length);
-            byte[] frameBytes = curPos == 0 && newPos == bytes.length ? bytes :
-                    Arrays.copyOfRange(bytes, curPos, newPos);
-            ret.add(new Frame(code, frameBytes));
+            // frames share the encoded message
+            ret.add(new Frame(code, bytes, curPos, newPos - curPos));
             curPos = newPos;
         }
 
@@ -179,7 +183,7 @@ public class MessageCodec extends MessageToMessageCodec<Frame, Message> {
             // frame has been split
             int contextId = contextIdCounter.getAndIncrement();
             ret.get(0).totalFrameSize = bytes.length;
-            loggerWire.debug("Message (size " + bytes.length + ") split to " + ret.size() + " frames. Context-id: " + contextId);
+            loggerWire.debug("Message (size {}) split to {} frames. Context-id: {}", bytes.length, ret.size(), contextId);
             for (Frame frame : ret) {
                 frame.contextId = contextId;
             }
@@ -19,6 +19,7 @@ import io.taucoin.net.tau.TauVersion;
 import io.taucoin.net.tau.message.Tau60MessageFactory;
 import io.taucoin.net.tau.message.Tau61MessageFactory;
 import io.taucoin.net.tau.message.Tau62MessageFactory;
+import io.taucoin.net.tau.message.Tau63MessageFactory;
 import io.taucoin.net.message.ReasonCode;
 import io.taucoin.net.rlpx.*;
 import io.taucoin.sync.SyncStateName;
@@ -86,12 +87,17 @@ public class Channel {
     private Node node;
     private NodeStatistics nodeStatistics;
 
+    private ReceiveBufferAllocator recvAllocator;
+
+    private KnownTransactions knownTxs;
+
     private boolean discoveryMode;
     private boolean isActive;
 
     public void init(ChannelPipeline pipeline, String remoteId, boolean discoveryMode) {
 
         isActive = remoteId != null && !remoteId.isEmpty();
+        knownTxs = new KnownTransactions(config.peerKnownTxs());
 
         pipeline.addLast("readTimeoutHandler",
                 new ReadTimeoutHandler(config.peerChannelReadTimeout(), TimeUnit.SECONDS));
@@ -185,6 +191,7 @@ public class Channel {
             case V60:   return new Tau60MessageFactory();
             case V61:   return new Tau61MessageFactory();
             case V62:   return new Tau62MessageFactory();
+            case V63:   return new Tau63MessageFactory();
             default:    throw new IllegalArgumentException("Eth " + version + " is not supported");
         }
     }
@@ -197,6 +204,21 @@ public class Channel {
         return nodeStatistics;
     }
 
+    public void setReceiveBufferAllocator(ReceiveBufferAllocator recvAllocator) {
+        this.recvAllocator = recvAllocator;
+    }
+
+    /**
+     * @return size of the buffer the peer socket is currently read into
+     */
+    public int getReceiveBufferSize() {
+        return recvAllocator == null ? 0 : recvAllocator.getBufferSize();
+    }
+
+    public long getBytesReceived() {
+        return recvAllocator == null ? 0 : recvAllocator.getBytesReceived();
+    }
+
     public void setNode(byte[] nodeId) {
         node = new Node(nodeId, inetSocketAddress.getHostName(), inetSocketAddress.getPort());
         nodeStatistics = nodeManager.getNodeStatistics(node);
@@ -339,11 +361,46 @@ public class Channel {
         } else {
             slicedTxs = CollectionUtils.truncateRand(txs, MAX_SAFE_TXS);
         }
-        eth.sendTransaction(slicedTxs);
+        sendTransaction(slicedTxs);
     }
 
+    /**
+     * Sends those of the transactions the peer isn't known to have
+     */
     public void sendTransaction(List<Transaction> tx) {
-        eth.sendTransaction(tx);
+        List<Transaction> unknown = knownTxs.addUnknown(tx);
+        if (!unknown.isEmpty()) {
+            eth.sendTransaction(unknown);
+        }
+    }
+
+    /**
+     * Asks the peer for the bodies of the transactions it announced
+     */
+    public void requestTransactions(List<byte[]> hashes) {
+        eth.requestTransactions(hashes);
+    }
+
+    /**
+     * Remembers the transactions received from the peer
+     * or sent to it, so they aren't sent to it again
+     */
+    public void markTransactionsKnown(List<Transaction> txs) {
+        knownTxs.addAll(txs);
+    }
+
+    public void markTransactionHashesKnown(List<byte[]> hashes) {
+        for (byte[] hash : hashes) {
+            knownTxs.add(hash);
+        }
+    }
+
+    public boolean isTransactionKnown(byte[] hash) {
+        return knownTxs.contains(hash);
+    }
+
+    public int getKnownTransactionsCount() {
+        return knownTxs.size();
     }
 
     public void sendNewBlock(Block block) {
@@ -352,6 +352,19 @@ public class ChannelManager {
         newPeersMap.values().remove(channel);
     }
 
+    /**
+     * @return total size of the buffers active peers are currently read into
+     */
+    public long getReceiveBuffersSize() {
+        long size = 0;
+        synchronized (activePeers) {
+            for (Channel channel : activePeers.values()) {
+                size += channel.getReceiveBufferSize();
+            }
+        }
+        return size;
+    }
+
     public void onSyncDone() {
 
         synchronized (activePeers) {
@@ -0,0 +1,61 @@
+package io.taucoin.net.server;
+
+import io.taucoin.core.Transaction;
+import io.taucoin.db.ByteArrayWrapper;
+import org.apache.commons.collections4.map.LRUMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Hashes of the transactions a peer is known to have, either sent
+ * to it or received from it. Only the most recent ones are kept,
+ * a transaction forgotten here costs one more announcement at most.
+ *
+ * @author taucoin core
+ * @since 16.07.2019
+ */
+class KnownTransactions {
+
+    private final Map<ByteArrayWrapper, Object> hashes;
+
+    KnownTransactions(int limit) {
+        this.hashes = new LRUMap<>(Math.max(1, limit));
+    }
+
+    synchronized void add(byte[] hash) {
+        hashes.put(new ByteArrayWrapper(hash), null);
+    }
+
+    synchronized void addAll(List<Transaction> txs) {
+        for (Transaction tx : txs) {
+            hashes.put(new ByteArrayWrapper(tx.getHash()), null);
+        }
+    }
+
+    /**
+     * Marks the transactions as known
+     *
+     * @return those of them which weren't known before
+     */
+    synchronized List<Transaction> addUnknown(List<Transaction> txs) {
+        List<Transaction> unknown = new ArrayList<>(txs.size());
+        for (Transaction tx : txs) {
+            ByteArrayWrapper hash = new ByteArrayWrapper(tx.getHash());
+            if (!hashes.containsKey(hash)) {
+                hashes.put(hash, null);
+                unknown.add(tx);
+            }
+        }
+        return unknown;
+    }
+
+    synchronized boolean contains(byte[] hash) {
+        return hashes.containsKey(new ByteArrayWrapper(hash));
+    }
+
+    synchronized int size() {
+        return hashes.size();
+    }
+}
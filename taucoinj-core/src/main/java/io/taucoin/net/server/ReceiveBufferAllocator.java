@@ -0,0 +1,120 @@
+package io.taucoin.net.server;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PoolArenaMetric;
+import io.netty.buffer.PoolChunkListMetric;
+import io.netty.buffer.PoolChunkMetric;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.AdaptiveRecvByteBufAllocator;
+import io.netty.channel.RecvByteBufAllocator;
+import io.taucoin.net.rlpx.MessageCodec;
+
+/**
+ * Sizes the buffers a peer socket is read into by the amount of data
+ * the peer actually sends, a ping costs a small buffer and a block body
+ * grows it up to one frame. Frames larger than a buffer are put together
+ * by the frame decoder, so the buffer doesn't need to fit a whole message.
+ *
+ * Buffers are taken from the pooled allocator, {@link #getUsedDirectMemory()}
+ * tells how much of the pool all the channels hold.
+ *
+ * @author taucoin core
+ * @since 14.07.2019
+ */
+public class ReceiveBufferAllocator implements RecvByteBufAllocator {
+
+    public static final ByteBufAllocator POOLED = PooledByteBufAllocator.DEFAULT;
+
+    private static final int MIN_BUFFER_SIZE = 64;
+    private static final int INITIAL_BUFFER_SIZE = 1024;
+
+    // read buffer limit for peers not splitting messages into frames
+    private static final int MAX_UNFRAMED_BUFFER_SIZE = 65536;
+
+    // frame header, padding and MAC
+    private static final int FRAME_OVERHEAD = 64;
+
+    private final AdaptiveRecvByteBufAllocator adaptive;
+
+    private volatile int bufferSize = 0;
+    private volatile long bytesReceived = 0;
+
+    /**
+     * @param maxFrameSize max frame payload size,
+     *                     {@link MessageCodec#NO_FRAMING} if frames aren't split
+     */
+    public ReceiveBufferAllocator(int maxFrameSize) {
+        int maxBufferSize = maxFrameSize >= MessageCodec.NO_FRAMING ?
+                MAX_UNFRAMED_BUFFER_SIZE : maxFrameSize + FRAME_OVERHEAD;
+        maxBufferSize = Math.max(maxBufferSize, INITIAL_BUFFER_SIZE);
+
+        this.adaptive = new AdaptiveRecvByteBufAllocator(MIN_BUFFER_SIZE, INITIAL_BUFFER_SIZE, maxBufferSize);
+    }
+
+    @Override
+    public Handle newHandle() {
+        final Handle handle = adaptive.newHandle();
+        return new Handle() {
+            @Override
+            public ByteBuf allocate(ByteBufAllocator alloc) {
+                ByteBuf buf = handle.allocate(alloc);
+                bufferSize = buf.capacity();
+                return buf;
+            }
+
+            @Override
+            public int guess() {
+                return handle.guess();
+            }
+
+            @Override
+            public void record(int actualReadBytes) {
+                // only the channel event loop reads
+                if (actualReadBytes > 0) bytesReceived += actualReadBytes;
+                handle.record(actualReadBytes);
+            }
+        };
+    }
+
+    /**
+     * @return size of the buffer the last read went into
+     */
+    public int getBufferSize() {
+        return bufferSize;
+    }
+
+    public long getBytesReceived() {
+        return bytesReceived;
+    }
+
+    /**
+     * @return direct memory taken by the pool, used or not
+     */
+    public static long getReservedDirectMemory() {
+        long reserved = 0;
+        for (PoolArenaMetric arena : PooledByteBufAllocator.DEFAULT.directArenas()) {
+            for (PoolChunkListMetric chunkList : arena.chunkLists()) {
+                for (PoolChunkMetric chunk : chunkList) {
+                    reserved += chunk.chunkSize();
+                }
+            }
+        }
+        return reserved;
+    }
+
+    /**
+     * @return direct memory of the pool held by buffers in use
+     */
+    public static long getUsedDirectMemory() {
+        long used = 0;
+        for (PoolArenaMetric arena : PooledByteBufAllocator.DEFAULT.directArenas()) {
+            for (PoolChunkListMetric chunkList : arena.chunkLists()) {
+                for (PoolChunkMetric chunk : chunkList) {
+                    used += chunk.chunkSize() - chunk.freeBytes();
+                }
+            }
+        }
+        return used;
+    }
+}
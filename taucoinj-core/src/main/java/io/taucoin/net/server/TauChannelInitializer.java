@@ -2,6 +2,7 @@ package io.taucoin.net.server;
 
 import io.netty.channel.*;
 import io.netty.channel.socket.nio.NioSocketChannel;
+import io.taucoin.config.SystemProperties;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -25,6 +26,9 @@ public class TauChannelInitializer extends ChannelInitializer<NioSocketChannel>
     @Autowired
     ChannelManager channelManager;
 
+    @Autowired
+    SystemProperties config;
+
     private String remoteId;
 
     private boolean peerDiscoveryMode = false;
@@ -54,10 +58,12 @@ public class TauChannelInitializer extends ChannelInitializer<NioSocketChannel>
                 channelManager.add(channel);
             }
 
-            // limit the size of receiving buffer to 1024
-            ch.config().setRecvByteBufAllocator(new FixedRecvByteBufAllocator(16_777_216));
-            ch.config().setOption(ChannelOption.SO_RCVBUF, 16_777_216);
+            // read buffers follow the traffic up to one frame, the socket buffer is left to the OS
+            ReceiveBufferAllocator recvAllocator = new ReceiveBufferAllocator(config.rlpxMaxFrameSize());
+            ch.config().setAllocator(ReceiveBufferAllocator.POOLED);
+            ch.config().setRecvByteBufAllocator(recvAllocator);
             ch.config().setOption(ChannelOption.SO_BACKLOG, 1024);
+            channel.setReceiveBufferAllocator(recvAllocator);
 
             // be aware of channel closing
             ch.closeFuture().addListener(new ChannelFutureListener() {
@@ -0,0 +1,530 @@
+package io.taucoin.net.submit;
+
+import io.taucoin.config.SystemProperties;
+import io.taucoin.core.PendingState;
+import io.taucoin.core.SignatureVerifier;
+import io.taucoin.core.Transaction;
+import io.taucoin.db.ByteArrayWrapper;
+import io.taucoin.net.server.Channel;
+import io.taucoin.net.server.ChannelManager;
+
+import org.apache.commons.collections4.map.LRUMap;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Admits transactions received from peers into the pending state
+ * off the network threads.
+ *
+ * Every peer gets a bounded inbound queue, transactions which don't
+ * fit into it are dropped, so a flooding peer can't hold the event loop
+ * it shares with other peers. The admission thread takes transactions
+ * from the peers in turn, recovers their senders in one batch on the
+ * {@link SignatureVerifier} pool, adds them to the pending state and
+ * relays the new ones.
+ *
+ * Transactions announced by hash are pulled from one peer at a time while
+ * the other announcers are remembered. The next one is asked if the peer
+ * replies without the transaction, doesn't reply in time or disconnects.
+ *
+ * @author taucoin core
+ * @since 12.07.2019
+ */
+@Component
+public class TransactionAdmission {
+
+    private static final Logger logger = LoggerFactory.getLogger("net");
+
+    // transactions taken from one peer before switching to the next one
+    private static final int PEER_BATCH = 128;
+
+    // announced hashes remembered as pulled from some peer
+    private static final int REQUESTED_LIMIT = 65536;
+
+    // peers remembered as having an announced transaction, besides the asked one
+    private static final int ANNOUNCERS_LIMIT = 8;
+
+    // how often the pulled transactions are checked for timeouts
+    private static final long TIMEOUT_CHECK_PERIOD = 1000;
+
+    private final ConcurrentMap<Channel, PeerQueue> queues = new ConcurrentHashMap<>();
+
+    // peers having transactions to admit, each one is in at most once
+    private final BlockingQueue<PeerQueue> ready = new LinkedBlockingQueue<>();
+
+    // hash -> peers announced the transaction, guards the asks as well
+    private final Map<ByteArrayWrapper, Announcement> requested = new LRUMap<>(REQUESTED_LIMIT);
+
+    // transactions asked from peers in the order they time out
+    private final Queue<Ask> asks = new ArrayDeque<>();
+
+    private final AtomicLong received = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+    private final AtomicLong duplicate = new AtomicLong();
+    private final AtomicLong announced = new AtomicLong();
+    private final AtomicLong pulled = new AtomicLong();
+    private final AtomicLong retried = new AtomicLong();
+    private final AtomicLong invalid = new AtomicLong();
+    private final AtomicLong admitted = new AtomicLong();
+    private final AtomicLong batches = new AtomicLong();
+
+    private int peerQueueLimit;
+    private int batchSize;
+    private long requestTimeout;
+
+    private Thread admissionThread;
+
+    @Autowired
+    SystemProperties config;
+
+    @Autowired
+    PendingState pendingState;
+
+    @Autowired
+    ChannelManager channelManager;
+
+    @PostConstruct
+    public void init() {
+        peerQueueLimit = config.txAdmissionPeerQueue();
+        batchSize = config.txAdmissionBatch();
+        requestTimeout = config.peerRequestTimeout();
+
+        this.admissionThread = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                admissionLoop();
+            }
+        }, "TxAdmissionThread");
+        this.admissionThread.setDaemon(true);
+        this.admissionThread.start();
+    }
+
+    @PreDestroy
+    public void close() {
+        admissionThread.interrupt();
+    }
+
+    /**
+     * Queues transactions received from the peer, never blocks
+     *
+     * @return number of transactions dropped as the peer queue is full
+     */
+    public int submit(Channel receivedFrom, List<Transaction> txs) {
+        if (txs.isEmpty()) return 0;
+
+        PeerQueue queue;
+        int rejected = 0;
+        while (true) {
+            queue = queues.get(receivedFrom);
+            if (queue == null) {
+                PeerQueue created = new PeerQueue(receivedFrom, peerQueueLimit);
+                queue = queues.putIfAbsent(receivedFrom, created);
+                if (queue == null) queue = created;
+            }
+
+            // the admission thread may have dropped the queue in between
+            synchronized (queue) {
+                if (queue.removed) continue;
+                for (Transaction tx : txs) {
+                    if (!queue.txs.offer(tx)) ++rejected;
+                }
+            }
+            break;
+        }
+
+        received.addAndGet(txs.size());
+        if (rejected > 0) {
+            dropped.addAndGet(rejected);
+            logger.debug("Peer {}: admission queue is full, {} txs dropped", receivedFrom.getPeerIdShort(), rejected);
+        }
+
+        schedule(queue);
+        return rejected;
+    }
+
+    /**
+     * Picks the announced transactions worth pulling from the peer,
+     * the ones neither received already nor asked from another peer
+     * within the request timeout. The peer is kept as an announcer
+     * of the others to ask it if the asked peer doesn't deliver them.
+     *
+     * @return hashes of the transactions to request, they are
+     *         considered requested from now on
+     */
+    public List<byte[]> request(Channel announcer, List<byte[]> hashes) {
+        List<byte[]> wanted = new ArrayList<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (requested) {
+            for (byte[] hash : hashes) {
+                if (pendingState.isKnownTransaction(hash)) continue;
+
+                ByteArrayWrapper key = new ByteArrayWrapper(hash);
+                Announcement announcement = requested.get(key);
+                if (announcement == null) {
+                    announcement = new Announcement();
+                    requested.put(key, announcement);
+                }
+
+                if (announcement.askedFrom == null || now - announcement.askedAt >= requestTimeout) {
+                    ask(key, announcement, announcer, now);
+                    wanted.add(hash);
+                } else if (announcement.askedFrom != announcer) {
+                    announcement.addAnnouncer(announcer);
+                }
+            }
+        }
+
+        announced.addAndGet(hashes.size());
+        pulled.addAndGet(wanted.size());
+        return wanted;
+    }
+
+    /**
+     * Asks the next announcers for the transactions
+     * the peer replied without
+     *
+     * @param hashes transactions requested from the peer and missing in the reply
+     */
+    public void notDelivered(Channel peer, List<byte[]> hashes) {
+        Map<Channel, List<byte[]>> retries = new IdentityHashMap<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (requested) {
+            for (byte[] hash : hashes) {
+                ByteArrayWrapper key = new ByteArrayWrapper(hash);
+                Announcement announcement = requested.get(key);
+                if (announcement == null || announcement.askedFrom != peer) continue;
+
+                if (!askNext(key, announcement, now, retries)) requested.remove(key);
+            }
+        }
+
+        requestTransactions(retries);
+    }
+
+    /**
+     * Forgets the peer as an announcer and asks the next
+     * announcers for the transactions it didn't deliver
+     */
+    public void onDisconnect(Channel peer) {
+        Map<Channel, List<byte[]>> retries = new IdentityHashMap<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (requested) {
+            List<ByteArrayWrapper> delivered = new ArrayList<>();
+            for (Map.Entry<ByteArrayWrapper, Announcement> entry : requested.entrySet()) {
+                Announcement announcement = entry.getValue();
+                announcement.removeAnnouncer(peer);
+                if (announcement.askedFrom == peer && !askNext(entry.getKey(), announcement, now, retries)) {
+                    delivered.add(entry.getKey());
+                }
+            }
+            for (ByteArrayWrapper key : delivered) {
+                requested.remove(key);
+            }
+        }
+
+        requestTransactions(retries);
+    }
+
+    private void retryTimedOut() {
+        Map<Channel, List<byte[]>> retries = new IdentityHashMap<>();
+        long now = System.currentTimeMillis();
+
+        synchronized (requested) {
+            Ask ask;
+            while ((ask = asks.peek()) != null && now - ask.askedAt >= requestTimeout) {
+                asks.poll();
+
+                // the transaction was asked again since then or forgotten
+                Announcement announcement = ask.announcement;
+                if (announcement.askedFrom != ask.peer || announcement.askedAt != ask.askedAt) continue;
+                if (requested.get(ask.hash) != announcement) continue;
+
+                if (!askNext(ask.hash, announcement, now, retries)) requested.remove(ask.hash);
+            }
+        }
+
+        requestTransactions(retries);
+    }
+
+    // guarded by requested
+    private void ask(ByteArrayWrapper hash, Announcement announcement, Channel peer, long now) {
+        announcement.askedFrom = peer;
+        announcement.askedAt = now;
+        announcement.removeAnnouncer(peer);
+        asks.add(new Ask(hash, announcement, peer, now));
+    }
+
+    /**
+     * Moves the transaction to the next announcer, guarded by requested
+     *
+     * @return false if the transaction has been received meanwhile
+     */
+    private boolean askNext(ByteArrayWrapper hash, Announcement announcement, long now,
+                            Map<Channel, List<byte[]>> retries) {
+        if (pendingState.isKnownTransaction(hash.getData())) return false;
+
+        Channel next = announcement.announcers.poll();
+        if (next == null) {
+            // the next announcement of the transaction asks for it right away
+            announcement.askedFrom = null;
+            return true;
+        }
+
+        ask(hash, announcement, next, now);
+        List<byte[]> hashes = retries.get(next);
+        if (hashes == null) {
+            hashes = new ArrayList<>();
+            retries.put(next, hashes);
+        }
+        hashes.add(hash.getData());
+        retried.incrementAndGet();
+        return true;
+    }
+
+    private void requestTransactions(Map<Channel, List<byte[]>> retries) {
+        for (Map.Entry<Channel, List<byte[]>> entry : retries.entrySet()) {
+            logger.debug("Peer {}: asking for {} txs not delivered by other announcers",
+                    entry.getKey().getPeerIdShort(), entry.getValue().size());
+            entry.getKey().requestTransactions(entry.getValue());
+        }
+    }
+
+    private void schedule(PeerQueue queue) {
+        if (!queue.txs.isEmpty() && queue.scheduled.compareAndSet(false, true)) {
+            ready.add(queue);
+        }
+    }
+
+    private void admissionLoop() {
+        while (!Thread.currentThread().isInterrupted()) {
+            try {
+                Map<PeerQueue, List<Transaction>> batch = takeBatch();
+                if (!batch.isEmpty()) admit(batch);
+                retryTimedOut();
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                logger.error("Error admitting transactions", e);
+            }
+        }
+    }
+
+    private Map<PeerQueue, List<Transaction>> takeBatch() throws InterruptedException {
+        Map<PeerQueue, List<Transaction>> batch = new LinkedHashMap<>();
+
+        int taken = 0;
+        // wakes up now and then to check the pulled transactions
+        PeerQueue queue = ready.poll(TIMEOUT_CHECK_PERIOD, TimeUnit.MILLISECONDS);
+        while (queue != null) {
+            List<Transaction> txs = batch.get(queue);
+            if (txs == null) {
+                txs = new ArrayList<>();
+                batch.put(queue, txs);
+            }
+            taken += queue.txs.drainTo(txs, Math.min(PEER_BATCH, batchSize - taken));
+
+            // give others a turn before taking the rest of the peer's transactions
+            queue.scheduled.set(false);
+            synchronized (queue) {
+                if (queue.txs.isEmpty()) {
+                    queues.remove(queue.channel, queue);
+                    queue.removed = true;
+                }
+            }
+            schedule(queue);
+
+            queue = taken < batchSize ? ready.poll() : null;
+        }
+        return batch;
+    }
+
+    private void admit(Map<PeerQueue, List<Transaction>> batch) {
+        Set<Transaction> unique = new LinkedHashSet<>();
+        int known = 0;
+        for (List<Transaction> txs : batch.values()) {
+            for (Transaction tx : txs) {
+                // no need to recover the sender of a transaction received before
+                if (pendingState.isKnownTransaction(tx.getHash())) {
+                    ++known;
+                } else {
+                    unique.add(tx);
+                }
+            }
+        }
+        duplicate.addAndGet(known);
+
+        Set<Transaction> verified = new HashSet<>(SignatureVerifier.filterVerified(new ArrayList<>(unique)));
+        int verifiedCount = verified.size();
+        invalid.addAndGet(unique.size() - verifiedCount);
+
+        for (Map.Entry<PeerQueue, List<Transaction>> entry : batch.entrySet()) {
+            // the same transaction from another peer of the batch is a duplicate
+            Set<Transaction> txSet = new HashSet<>();
+            for (Transaction tx : entry.getValue()) {
+                if (verified.remove(tx)) txSet.add(tx);
+            }
+            if (txSet.isEmpty()) continue;
+
+            List<Transaction> txListBroadcasted = pendingState.addWireTransactions(txSet);
+            admitted.addAndGet(txListBroadcasted.size());
+
+            // broadcast transactions only after tx is verified.
+            if (!txListBroadcasted.isEmpty()) {
+                TransactionTask transactionTask = new TransactionTask(txListBroadcasted, channelManager, entry.getKey().channel);
+                TransactionExecutor.instance.submitTransaction(transactionTask);
+            }
+        }
+
+        batches.incrementAndGet();
+        logger.debug("Admission batch: {} txs from {} peers, {} verified", unique.size(), batch.size(), verifiedCount);
+    }
+
+    /**
+     * @return transactions waiting for admission
+     */
+    public int getQueued() {
+        int queued = 0;
+        for (PeerQueue queue : queues.values()) {
+            queued += queue.txs.size();
+        }
+        return queued;
+    }
+
+    /**
+     * @return transactions received from all the peers
+     */
+    public long getReceivedCount() {
+        return received.get();
+    }
+
+    /**
+     * @return transactions dropped because the peer queue was full
+     */
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+
+    /**
+     * @return transactions skipped as received before
+     */
+    public long getDuplicateCount() {
+        return duplicate.get();
+    }
+
+    /**
+     * @return transaction hashes announced by all the peers
+     */
+    public long getAnnouncedCount() {
+        return announced.get();
+    }
+
+    /**
+     * @return announced transactions requested from the peers
+     */
+    public long getPulledCount() {
+        return pulled.get();
+    }
+
+    /**
+     * @return announced transactions asked from another announcer
+     */
+    public long getRetriedCount() {
+        return retried.get();
+    }
+
+    /**
+     * @return transactions which signatures failed to verify
+     */
+    public long getInvalidCount() {
+        return invalid.get();
+    }
+
+    /**
+     * @return transactions which got into the pending state
+     */
+    public long getAdmittedCount() {
+        return admitted.get();
+    }
+
+    public long getBatchesCount() {
+        return batches.get();
+    }
+
+    private static class Announcement {
+        // peer the transaction is asked from, null if none is
+        Channel askedFrom;
+        long askedAt;
+        // peers to ask next, in the order they announced it
+        final Queue<Channel> announcers = new ArrayDeque<>();
+
+        // channels of a reconnected peer are equal, each connection is an announcer of its own
+        void addAnnouncer(Channel peer) {
+            if (announcers.size() >= ANNOUNCERS_LIMIT) return;
+            for (Channel announcer : announcers) {
+                if (announcer == peer) return;
+            }
+            announcers.add(peer);
+        }
+
+        void removeAnnouncer(Channel peer) {
+            Iterator<Channel> it = announcers.iterator();
+            while (it.hasNext()) {
+                if (it.next() == peer) it.remove();
+            }
+        }
+    }
+
+    private static class Ask {
+        final ByteArrayWrapper hash;
+        final Announcement announcement;
+        final Channel peer;
+        final long askedAt;
+
+        Ask(ByteArrayWrapper hash, Announcement announcement, Channel peer, long askedAt) {
+            this.hash = hash;
+            this.announcement = announcement;
+            this.peer = peer;
+            this.askedAt = askedAt;
+        }
+    }
+
+    private static class PeerQueue {
+        final Channel channel;
+        final BlockingQueue<Transaction> txs;
+        final AtomicBoolean scheduled = new AtomicBoolean(false);
+        // guarded by the queue, set once it is out of the queues map
+        boolean removed = false;
+
+        PeerQueue(Channel channel, int limit) {
+            this.channel = channel;
+            this.txs = new ArrayBlockingQueue<>(limit);
+        }
+    }
+}
@@ -13,10 +13,11 @@ public enum TauVersion {
 
     V60((byte) 60),
     V61((byte) 61),
-    V62((byte) 62);
+    V62((byte) 62),
+    V63((byte) 63);
 
     public static final byte LOWER = V60.getCode();
-    public static final byte UPPER = V62.getCode();
+    public static final byte UPPER = V63.getCode();
 
     private byte code;
 
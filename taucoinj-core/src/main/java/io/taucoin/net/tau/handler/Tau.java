@@ -118,6 +118,14 @@ public interface Tau {
      */
     void sendTransaction(List<Transaction> tx);
 
+    /**
+     * Asks the peer for the transactions it announced,
+     * ignored by the versions which don't announce them
+     *
+     * @param hashes hashes of the transactions
+     */
+    void requestTransactions(List<byte[]> hashes);
+
     /**
      * Sends new block to the wire
      */
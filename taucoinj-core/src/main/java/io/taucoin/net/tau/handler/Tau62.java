@@ -5,6 +5,7 @@ import io.taucoin.core.Block;
 import io.taucoin.core.BlockHeader;
 import io.taucoin.core.BlockIdentifier;
 import io.taucoin.core.BlockWrapper;
+import io.taucoin.net.tau.TauVersion;
 import io.taucoin.net.tau.message.*;
 import io.taucoin.sync.SyncQueue;
 import org.slf4j.Logger;
@@ -51,6 +52,10 @@ public class Tau62 extends TauHandler {
         super(V62);
     }
 
+    protected Tau62(TauVersion version) {
+        super(version);
+    }
+
     @Override
     public void channelRead0(final ChannelHandlerContext ctx, TauMessage msg) throws InterruptedException {
 
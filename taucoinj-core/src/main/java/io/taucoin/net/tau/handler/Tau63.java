@@ -0,0 +1,163 @@
+package io.taucoin.net.tau.handler;
+
+import io.netty.channel.ChannelHandlerContext;
+import io.taucoin.core.Transaction;
+import io.taucoin.db.ByteArrayWrapper;
+import io.taucoin.net.message.Message;
+import io.taucoin.net.tau.message.GetTransactionsMessage;
+import io.taucoin.net.tau.message.NewTxHashesMessage;
+import io.taucoin.net.tau.message.TauMessage;
+import io.taucoin.net.tau.message.TransactionsMessage;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.annotation.Scope;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static java.lang.Math.min;
+import static io.taucoin.net.tau.TauVersion.V63;
+
+/**
+ * Tau 63 <br>
+ *
+ * Announces new transactions by their hashes, a peer pulls
+ * only the bodies of the transactions it doesn't have yet.
+ * Bodies the peer replies without are asked from other announcers.
+ *
+ * @author taucoin core
+ * @since 16.07.2019
+ */
+@Component
+@Scope("prototype")
+public class Tau63 extends Tau62 {
+
+    private final static Logger logger = LoggerFactory.getLogger("net");
+
+    // hashes asked with a single GET_TRANSACTIONS
+    private static final int MAX_TXS_ASK = 256;
+
+    // transactions sent in reply to a single GET_TRANSACTIONS
+    private static final int MAX_TXS_TO_SEND = 1024;
+
+    public Tau63() {
+        super(V63);
+    }
+
+    @Override
+    public void channelRead0(final ChannelHandlerContext ctx, TauMessage msg) throws InterruptedException {
+
+        super.channelRead0(ctx, msg);
+
+        switch (msg.getCommand()) {
+            case NEW_TX_HASHES:
+                processNewTxHashes((NewTxHashesMessage) msg);
+                break;
+            case GET_TRANSACTIONS:
+                processGetTransactions((GetTransactionsMessage) msg);
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * Announces the transactions instead of sending them
+     */
+    @Override
+    public void sendTransaction(List<Transaction> txs) {
+        List<byte[]> hashes = new ArrayList<>(txs.size());
+        for (Transaction tx : txs) {
+            hashes.add(tx.getHash());
+        }
+        sendMessage(new NewTxHashesMessage(hashes));
+    }
+
+    @Override
+    public void requestTransactions(List<byte[]> hashes) {
+        for (int i = 0; i < hashes.size(); i += MAX_TXS_ASK) {
+            List<byte[]> batch = hashes.subList(i, min(i + MAX_TXS_ASK, hashes.size()));
+            sendMessage(new GetTransactionsMessage(new ArrayList<>(batch)));
+        }
+    }
+
+    @Override
+    public void onShutdown() {
+        super.onShutdown();
+        txAdmission.onDisconnect(channel);
+    }
+
+    @Override
+    protected void processTransactions(TransactionsMessage msg, Message request) {
+
+        super.processTransactions(msg, request);
+
+        if (!(request instanceof GetTransactionsMessage)) return;
+
+        Set<ByteArrayWrapper> delivered = new HashSet<>();
+        for (Transaction tx : msg.getTransactions()) {
+            delivered.add(new ByteArrayWrapper(tx.getHash()));
+        }
+
+        List<byte[]> missing = new ArrayList<>();
+        for (byte[] hash : ((GetTransactionsMessage) request).getTxHashes()) {
+            if (!delivered.contains(new ByteArrayWrapper(hash))) missing.add(hash);
+        }
+
+        if (!missing.isEmpty()) {
+            if (logger.isTraceEnabled()) logger.trace(
+                    "Peer {}: replied without {} of the asked txs",
+                    channel.getPeerIdShort(),
+                    missing.size()
+            );
+            txAdmission.notDelivered(channel, missing);
+        }
+    }
+
+    protected void processNewTxHashes(NewTxHashesMessage msg) {
+
+        List<byte[]> hashes = msg.getTxHashes();
+
+        if(logger.isTraceEnabled()) logger.trace(
+                "Peer {}: processing NewTxHashes, size [{}]",
+                channel.getPeerIdShort(),
+                hashes.size()
+        );
+
+        if (hashes.isEmpty()) {
+            return;
+        }
+
+        channel.markTransactionHashesKnown(hashes);
+
+        List<byte[]> wanted = txAdmission.request(channel, hashes);
+        requestTransactions(wanted);
+    }
+
+    protected void processGetTransactions(GetTransactionsMessage msg) {
+
+        List<byte[]> hashes = msg.getTxHashes();
+
+        if(logger.isTraceEnabled()) logger.trace(
+                "Peer {}: processing GetTransactions, size [{}]",
+                channel.getPeerIdShort(),
+                hashes.size()
+        );
+
+        List<Transaction> txs = new ArrayList<>(min(hashes.size(), MAX_TXS_TO_SEND));
+        for (byte[] hash : hashes) {
+            if (txs.size() >= MAX_TXS_TO_SEND) break;
+
+            // pending ones too, they may be valid on the peer side already
+            Transaction tx = pendingState.getTransaction(hash);
+            if (tx != null) txs.add(tx);
+        }
+
+        // replied even if empty, the peer is waiting for an answer
+        channel.markTransactionsKnown(txs);
+        sendMessage(new TransactionsMessage(txs));
+    }
+}
@@ -108,6 +108,10 @@ public class TauAdapter implements Tau {
     public void sendTransaction(List<Transaction> tx) {
     }
 
+    @Override
+    public void requestTransactions(List<byte[]> hashes) {
+    }
+
     @Override
     public void sendNewBlock(Block newBlock) {
     }
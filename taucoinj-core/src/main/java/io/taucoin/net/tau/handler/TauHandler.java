@@ -9,6 +9,7 @@ import io.taucoin.listener.CompositeEthereumListener;
 import io.taucoin.listener.EthereumListener;
 import io.taucoin.listener.EthereumListenerAdapter;
 import io.taucoin.net.server.ChannelManager;
+import io.taucoin.net.submit.TransactionAdmission;
 import io.taucoin.net.submit.TransactionExecutor;
 import io.taucoin.net.submit.TransactionTask;
 import io.taucoin.sync.SyncManager;
@@ -22,6 +23,7 @@ import io.taucoin.net.tau.TauVersion;
 import io.taucoin.net.tau.message.*;
 import io.taucoin.sync.SyncStateName;
 import io.taucoin.sync.SyncStatistics;
+import io.taucoin.net.message.Message;
 import io.taucoin.net.message.ReasonCode;
 import io.taucoin.net.server.Channel;
 import io.taucoin.util.BIUtil;
@@ -53,6 +55,8 @@ import static io.taucoin.util.BIUtil.isLessThan;
  * <li>GET_BLOCKS                       :   Request a list of blocks</li>
  * <li>BLOCKS                           :   Send a list of blocks</li>
  * <li>GET_BLOCK_HASHES_BY_NUMBER       :   Request list of know block hashes starting from the block</li>
+ * <li>NEW_TX_HASHES                    :   Announce hashes of new pending transactions</li>
+ * <li>GET_TRANSACTIONS                 :   Request a list of pending transactions by their hashes</li>
  * </ul>
  */
 public abstract class TauHandler extends SimpleChannelInboundHandler<TauMessage> implements Tau {
@@ -89,6 +93,9 @@ public abstract class TauHandler extends SimpleChannelInboundHandler<TauMessage>
     @Autowired
     protected ChannelManager channelManager;
 
+    @Autowired
+    protected TransactionAdmission txAdmission;
+
     protected Channel channel;
 
     private MessageQueue msgQueue = null;
@@ -122,10 +129,13 @@ public abstract class TauHandler extends SimpleChannelInboundHandler<TauMessage>
      * @see Tau60
      * @see Tau61
      * @see Tau62
+     * @see Tau63
      */
     protected byte[] lastHashToAsk;
     protected int maxHashesAsk;
 
+    private boolean trace;
+
     protected final SyncStatistics syncStats = new SyncStatistics();
 
     /**
@@ -141,6 +151,7 @@ public abstract class TauHandler extends SimpleChannelInboundHandler<TauMessage>
     @PostConstruct
     private void init() {
         maxHashesAsk = config.maxHashesAsk();
+        trace = config.wireTrace();
         bestBlock = blockchain.getBestBlock();
         ethereumListener.addListener(listener);
         // when sync enabled we delay transactions processing until sync is complete
@@ -153,18 +164,19 @@ public abstract class TauHandler extends SimpleChannelInboundHandler<TauMessage>
         if (TauMessageCodes.inRange(msg.getCommand().asByte(), version))
             loggerNet.trace("TauHandler invoke: [{}]", msg.getCommand());
 
-        ethereumListener.trace(String.format("TauHandler invoke: [%s]", msg.getCommand()));
+        if (trace)
+            ethereumListener.trace("TauHandler invoke: [" + msg.getCommand() + "]");
 
         channel.getNodeStatistics().ethInbound.add();
 
-        msgQueue.receivedMessage(msg);
+        Message request = msgQueue.receivedMessage(msg);
 
         switch (msg.getCommand()) {
             case STATUS:
                 processStatus((StatusMessage) msg, ctx);
                 break;
             case TRANSACTIONS:
-                processTransactions((TransactionsMessage) msg);
+                processTransactions((TransactionsMessage) msg, request);
                 break;
             case NEW_BLOCK:
                 processNewBlock((NewBlockMessage) msg);
@@ -261,24 +273,27 @@ public abstract class TauHandler extends SimpleChannelInboundHandler<TauMessage>
         sendMessage(msg);
     }
 
-    private void processTransactions(TransactionsMessage msg) {
+    /**
+     * Peers of this version push transactions, there's nothing to ask
+     */
+    @Override
+    public void requestTransactions(List<byte[]> hashes) {
+    }
+
+    /**
+     * @param request the message answered by the transactions,
+     *                <code>null</code> if they are pushed by the peer
+     */
+    protected void processTransactions(TransactionsMessage msg, Message request) {
 //        if(!processTransactions) {
 //            return;
 //        }
 
-        List<Transaction> txList = msg.getTransactions();
-        Set<Transaction>  txSet = new HashSet<Transaction>();
-        for (Transaction tx : txList) {
-            txSet.add(tx);
-        }
-        //if this transaction comes from net and can not be judged whether valid, drop it !
-        List<Transaction> txListBroadcasted = pendingState.addWireTransactions(txSet);
+        // the peer has them, don't announce them back
+        channel.markTransactionsKnown(msg.getTransactions());
 
-        // broadcast transactions only after tx is verified.
-        if (!txListBroadcasted.isEmpty()) {
-            TransactionTask transactionTask = new TransactionTask(txListBroadcasted, channelManager, channel);
-            TransactionExecutor.instance.submitTransaction(transactionTask);
-        }
+        // admission recovers signatures and touches the state, keep it off the event loop
+        txAdmission.submit(channel, msg.getTransactions());
     }
 
     public void sendNewBlock(Block block) {
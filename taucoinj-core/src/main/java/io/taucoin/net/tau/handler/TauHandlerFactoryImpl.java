@@ -23,6 +23,7 @@ public class TauHandlerFactoryImpl implements TauHandlerFactory {
             case V60:   return ctx.getBean(Tau60.class);
             case V61:   return ctx.getBean(Tau61.class);
             case V62:   return ctx.getBean(Tau62.class);
+            case V63:   return ctx.getBean(Tau63.class);
             default:    throw new IllegalArgumentException("Eth " + version + " is not supported");
         }
     }
@@ -0,0 +1,78 @@
+package io.taucoin.net.tau.message;
+
+import io.taucoin.util.RLP;
+import io.taucoin.util.RLPList;
+import io.taucoin.util.Utils;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Wrapper around a Tau NewTxHashes message on the network
+ *
+ * @see TauMessageCodes#NEW_TX_HASHES
+ *
+ * @author taucoin core
+ * @since 16.07.2019
+ */
+public class NewTxHashesMessage extends TauMessage {
+
+    /**
+     * List of announced transaction hashes
+     */
+    private List<byte[]> txHashes;
+
+    public NewTxHashesMessage(byte[] encoded) {
+        super(encoded);
+    }
+
+    public NewTxHashesMessage(List<byte[]> txHashes) {
+        this.txHashes = txHashes;
+        parsed = true;
+    }
+
+    private void parse() {
+        RLPList paramsList = (RLPList) RLP.decode2(encoded).get(0);
+
+        txHashes = new ArrayList<>();
+        for (int i = 0; i < paramsList.size(); ++i) {
+            txHashes.add(paramsList.get(i).getRLPData());
+        }
+        parsed = true;
+    }
+
+    private void encode() {
+        byte[][] encodedElementArray = new byte[txHashes.size()][];
+        for (int i = 0; i < txHashes.size(); ++i)
+            encodedElementArray[i] = RLP.encodeElement(txHashes.get(i));
+        this.encoded = RLP.encodeList(encodedElementArray);
+    }
+
+    @Override
+    public byte[] getEncoded() {
+        if (encoded == null) encode();
+        return encoded;
+    }
+
+    @Override
+    public Class<?> getAnswerMessage() {
+        return null;
+    }
+
+    public List<byte[]> getTxHashes() {
+        if (!parsed) parse();
+        return txHashes;
+    }
+
+    @Override
+    public TauMessageCodes getCommand() {
+        return TauMessageCodes.NEW_TX_HASHES;
+    }
+
+    @Override
+    public String toString() {
+        if (!parsed) parse();
+        return "[" + getCommand().name() + " count( " + txHashes.size() + " ) " +
+                Utils.getHashListShort(txHashes) + "]";
+    }
+}
@@ -172,7 +172,27 @@ public enum TauMessageCodes {
      * Supported in TAU V62.
      * When new block is generated, broadcast block header as soon as possile.
      */
-    NEW_BLOCK_HEADER(0x09);
+    NEW_BLOCK_HEADER(0x09),
+
+    /**
+     * {@code [+0x0a, hash_0: B_32, hash_1: B_32, ...] } <br>
+     *
+     * Supported in TAU V63. <br>
+     *
+     * Announces transactions by their hashes, the peer
+     * pulls the ones it doesn't know with GetTransactions.
+     */
+    NEW_TX_HASHES(0x0a),
+
+    /**
+     * {@code [+0x0b, hash_0: B_32, hash_1: B_32, ...] } <br>
+     *
+     * Supported in TAU V63. <br>
+     *
+     * Require peer to return a Transactions message holding
+     * those of the transactions it has in its pool.
+     */
+    GET_TRANSACTIONS(0x0b);
 
 
     private int cmd;
@@ -217,6 +237,20 @@ public enum TauMessageCodes {
                 NEW_BLOCK_HEADER
         });
 
+        versionToValuesMap.put(V63, new TauMessageCodes[]{
+                STATUS,
+                NEW_BLOCK_HASHES,
+                TRANSACTIONS,
+                GET_BLOCK_HEADERS,
+                BLOCK_HEADERS,
+                GET_BLOCK_BODIES,
+                BLOCK_BODIES,
+                NEW_BLOCK,
+                NEW_BLOCK_HEADER,
+                NEW_TX_HASHES,
+                GET_TRANSACTIONS
+        });
+
         for (TauVersion v : TauVersion.values()) {
             Map<Integer, TauMessageCodes> map = new HashMap<>();
             intToTypeMap.put(v, map);
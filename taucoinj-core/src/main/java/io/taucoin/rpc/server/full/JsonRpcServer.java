@@ -64,8 +64,7 @@ public final class JsonRpcServer extends io.taucoin.rpc.server.JsonRpcServer{
         this.dispatcher.register(new tau_transformS2T(this.taucoin));
 
         //transactions
-		//getTransactionByHash, Not supported now for no TransactionStore
-        //this.dispatcher.register(new tau_getTransactionByHash(this.taucoin));
+        this.dispatcher.register(new tau_getTransactionByHash(this.taucoin));
         this.dispatcher.register(new tau_sign(this.taucoin));
         this.dispatcher.register(new tau_sendTransaction(this.taucoin));
         this.dispatcher.register(new tau_sendRawTransaction(this.taucoin));
@@ -23,7 +23,6 @@ import org.slf4j.LoggerFactory;
 import org.spongycastle.util.encoders.Hex;
 
 import java.math.BigInteger;
-import java.security.SignatureException;
 import java.util.Arrays;
 import java.util.List;
 
@@ -191,12 +190,7 @@ public abstract class JsonRpcServerMethod implements RequestHandler {
             return null;
 
         res.put("number", "0x" + Long.toHexString(block.getNumber()));
-        ECKey key = null;
-        try{
-            key = ECKey.signatureToKey(block.getRawHash(),block.getblockSignature().toBase64());
-        }catch(SignatureException e){
-
-        }
+        ECKey key = block.getForgerKey();
         res.put("minerPublicKey", "0x" + Hex.toHexString(key.getPubKey()));
 
         res.put("minerAddress", ByteUtil.bytesToBase58(Utils.sha256hash160(key.getPubKey())).toBase58());
@@ -2,6 +2,7 @@ package io.taucoin.rpc.server.full.method;
 import com.thetransactioncompany.jsonrpc2.*;
 import com.thetransactioncompany.jsonrpc2.server.*;
 import io.taucoin.core.AccountState;
+import io.taucoin.core.TransactionInfo;
 import io.taucoin.core.VersionedChecksummedBytes;
 import io.taucoin.db.BlockStore;
 import io.taucoin.facade.Repository;
@@ -45,12 +46,10 @@ public class tau_getAccountDetails extends JsonRpcServerMethod {
             result.add("forgepower: "+repo.getforgePower(address).toString());
 
             AccountState ac = repo.getAccountState(address);
-            Iterator iterator = ac.getTranHistory().entrySet().iterator();
             int i=0;
-            while(iterator.hasNext()) {
-                Map.Entry entry = (Map.Entry) iterator.next();
-                result.add("tran "+i+" hashcode: "+entry.getKey().toString());
-                result.add("tran "+i+" tranTime: "+entry.getValue().toString());
+            for (TransactionInfo info : repo.getTransactionHistory(address, 0, Long.MAX_VALUE, (int) ac.getHistorySize())) {
+                result.add("tran "+i+" hashcode: "+Hex.toHexString(info.gettrHashcode()));
+                result.add("tran "+i+" tranTime: "+info.gettrTime());
                 i++;
             }
         }
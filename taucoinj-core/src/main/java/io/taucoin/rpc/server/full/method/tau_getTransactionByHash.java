@@ -3,8 +3,14 @@ package io.taucoin.rpc.server.full.method;
 import com.thetransactioncompany.jsonrpc2.*;
 import com.thetransactioncompany.jsonrpc2.server.*;
 import io.taucoin.rpc.server.full.JsonRpcServerMethod;
+import io.taucoin.core.Block;
 import io.taucoin.core.Blockchain;
+import io.taucoin.core.Transaction;
+import io.taucoin.core.TransactionLocation;
 import io.taucoin.facade.Taucoin;
+import net.minidev.json.JSONObject;
+import org.spongycastle.util.encoders.Hex;
+import java.util.Arrays;
 import java.util.List;
 
 public class tau_getTransactionByHash extends JsonRpcServerMethod {
@@ -19,18 +25,29 @@ public class tau_getTransactionByHash extends JsonRpcServerMethod {
         if (params.size() != 1) {
             return new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID());
         } else {
-            byte[] address = jsToAddress((String) params.get(0));
-            
-            /*
-            Blockchain blockchain = (Blockchain)taucoin.getBlockchain();
-            TransactionReceipt transaction = blockchain.getTransactionReceiptByHash(address);
+            byte[] txHash = jsToByteArray((String) params.get(0));
 
-            if (transaction == null)
+            Blockchain blockchain = taucoin.getBlockchain();
+            TransactionLocation location = blockchain.getTransactionLocation(txHash);
+            if (location == null)
                 return new JSONRPC2Response(null, req.getID());
 
-            JSONRPC2Response res = new JSONRPC2Response(transactionToJS(null, transaction.getTransaction()), req.getID());
-            */
-            JSONRPC2Response res = new JSONRPC2Response(JSONRPC2Error.INVALID_PARAMS, req.getID());
+            // the index entry may be stale, the block must still hold the transaction at it
+            Block block = blockchain.getBlockByHash(location.getBlockHash());
+            if (block == null || location.getIndex() < 0
+                    || location.getIndex() >= block.getTransactionsList().size())
+                return new JSONRPC2Response(null, req.getID());
+
+            Transaction transaction = block.getTransactionsList().get(location.getIndex());
+            if (!Arrays.equals(transaction.getHash(), txHash))
+                return new JSONRPC2Response(null, req.getID());
+
+            JSONObject tx = transactionToJS(block, transaction);
+            tx.put("blockHash", "0x" + Hex.toHexString(block.getHash()));
+            tx.put("blockNumber", "0x" + Long.toHexString(block.getNumber()));
+            tx.put("transactionIndex", "0x" + Integer.toHexString(location.getIndex()));
+
+            JSONRPC2Response res = new JSONRPC2Response(tx, req.getID());
             return res;
         }
 
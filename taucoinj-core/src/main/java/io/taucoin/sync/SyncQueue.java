@@ -12,8 +12,9 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
 import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
 
-import static java.lang.Thread.sleep;
 import static io.taucoin.core.ImportResult.IMPORTED_NOT_BEST;
 import static io.taucoin.core.ImportResult.NO_PARENT;
 import static io.taucoin.core.ImportResult.IMPORTED_BEST;
@@ -34,6 +35,9 @@ public class SyncQueue {
 
     private static final int SCAN_BLOCKS_LIMIT = 1000;
     private static final int BLOCK_QUEUE_LIMIT = 20000;
+    private static final int IMPORT_QUEUE_LIMIT = 256;
+    private static final int ORPHAN_BLOCKS_LIMIT = 1024;
+    private static final long ORPHAN_EXPIRY = 5 * 60 * 1000;
 
     /**
      * Store holding a list of hashes of the heaviest chain on the network,
@@ -52,7 +56,26 @@ public class SyncQueue {
      */
     private BlockQueue blockQueue;
 
-    public boolean noParent = false;
+    /**
+     * Blocks taken from {@link #blockQueue} which are decoded and
+     * have their signatures being verified, waiting for the import. <br>
+     * Being bounded it stops the {@link #prepareQueue()} thread
+     * and makes {@link #blockQueue} grow when the import lags behind
+     */
+    private final BlockingQueue<BlockWrapper> importQueue = new LinkedBlockingQueue<>(IMPORT_QUEUE_LIMIT);
+
+    /**
+     * Blocks which parent isn't on the chain yet, by parent hash, in the
+     * order they have failed. <br>
+     * The import goes on with other blocks and connects an orphan right
+     * after its parent is imported, so nothing waits for the gap recovery.
+     * Blocks got as NEW_BLOCK have no number until they connect, so the
+     * number can't be used to find the orphans
+     */
+    private final LinkedHashMap<ByteArrayWrapper, List<BlockWrapper>> orphans = new LinkedHashMap<>();
+    private int orphansCount = 0;
+
+    public volatile boolean noParent = false;
 
     @Autowired
     SystemProperties config;
@@ -73,7 +96,7 @@ public class SyncQueue {
 
     /**
      * Loads HashStore and BlockQueue from disk,
-     * starts {@link #produceQueue()} thread
+     * starts {@link #prepareQueue()} and {@link #produceQueue()} threads
      */
     public void init() {
 
@@ -99,6 +122,14 @@ public class SyncQueue {
             return;
         }
 
+        Runnable queuePreparer = new Runnable(){
+
+            @Override
+            public void run() {
+                prepareQueue();
+            }
+        };
+
         Runnable queueProducer = new Runnable(){
 
             @Override
@@ -107,39 +138,77 @@ public class SyncQueue {
             }
         };
 
-        Thread t=new Thread (queueProducer);
-        t.start();
+        new Thread(queuePreparer, "SyncQueuePrepareThread").start();
+        new Thread(queueProducer, "SyncQueueImportThread").start();
     }
 
     /**
-     * Processing the queue adding blocks to the chain.
+     * Takes blocks from the queue in number order, decodes them
+     * and starts signature verification ahead of the import
      */
-    private void produceQueue() {
+    private void prepareQueue() {
 
-        while (1==1){
+        while (true) {
 
             BlockWrapper wrapper = null;
             try {
                 wrapper = blockQueue.take();
                 logger.debug("BlockQueue size: {}", blockQueue.size());
+
+                wrapper.getBlock().getTransactionsList();
+                wrapper.startPreVerification();
+
+                importQueue.put(wrapper);
+            } catch (InterruptedException e) {
+                break;
+            } catch (Throwable e) {
+                logger.error("Error preparing block {}: ", wrapper, e);
+            }
+        }
+    }
+
+    /**
+     * Processing the queue adding blocks to the chain.
+     */
+    private void produceQueue() {
+
+        while (true) {
+
+            try {
+                importBlock(importQueue.take());
+            } catch (InterruptedException e) {
+                break;
+            }
+        }
+    }
+
+    /**
+     * Imports the block followed by the orphans it is the parent of
+     */
+    private void importBlock(BlockWrapper first) throws InterruptedException {
+
+        Deque<BlockWrapper> ready = new ArrayDeque<>();
+        ready.add(first);
+
+        while (!ready.isEmpty()) {
+
+            BlockWrapper wrapper = ready.poll();
+            try {
+                wrapper.awaitPreVerification();
                 ImportResult importResult = blockchain.tryToConnect(wrapper.getBlock());
 
                 // In case we don't have a parent on the chain
-                // return the try and wait for more blocks to come.
+                // keep the block until the parent is imported.
                 if (importResult == NO_PARENT) {
 //                    logger.info("No parent on the chain for block.number: {} block.hash: {}", wrapper.getNumber(), wrapper.getBlock().getShortHash());
                     wrapper.importFailed();
                     syncManager.tryGapRecovery(wrapper);
-                    // Here not add this block into block queue, because we don't
-                    // know its block number. This node will request block headers
-                    // and block bodies ASAP.
-                    //blockQueue.add(wrapper);
-                    noParent = true;
-                    sleep(2000);
-                } else {
-                    noParent = false;
+                    addOrphan(wrapper);
                 }
 
+                if (importResult.isSuccessful())
+                    ready.addAll(takeOrphans(wrapper.getHash()));
+
                 if (wrapper.isNewBlock() && importResult.isSuccessful())
                     syncManager.notifyNewBlockImported(wrapper);
 
@@ -162,8 +231,69 @@ public class SyncQueue {
                 logger.error("Error processing block {}: ", wrapper.getBlock().toString(), e);
                 logger.error("Block dump: {}", Hex.toHexString(wrapper.getBlock().getEncoded()));
             }
+        }
+
+        synchronized (orphans) {
+            noParent = orphansCount > 0;
+        }
+    }
+
+    /**
+     * Keeps the block until its parent is imported, expired orphans and
+     * the oldest ones over {@link #ORPHAN_BLOCKS_LIMIT} are dropped,
+     * they are downloaded again by the gap recovery
+     */
+    private void addOrphan(BlockWrapper wrapper) {
+        synchronized (orphans) {
+            Iterator<List<BlockWrapper>> siblings = orphans.values().iterator();
+            while (siblings.hasNext()) {
+                List<BlockWrapper> children = siblings.next();
+                Iterator<BlockWrapper> it = children.iterator();
+                while (it.hasNext()) {
+                    if (it.next().timeSinceFail() > ORPHAN_EXPIRY) {
+                        it.remove();
+                        --orphansCount;
+                    }
+                }
+                if (children.isEmpty()) siblings.remove();
+            }
+
+            ByteArrayWrapper parentHash = new ByteArrayWrapper(wrapper.getParentHash());
+            List<BlockWrapper> children = orphans.get(parentHash);
+            if (children == null) {
+                children = new ArrayList<>();
+                orphans.put(parentHash, children);
+            }
+            for (BlockWrapper child : children) {
+                if (Arrays.equals(child.getHash(), wrapper.getHash())) return;
+            }
+            children.add(wrapper);
+            ++orphansCount;
+
+            while (orphansCount > ORPHAN_BLOCKS_LIMIT) {
+                Map.Entry<ByteArrayWrapper, List<BlockWrapper>> oldest = orphans.entrySet().iterator().next();
+                oldest.getValue().remove(0);
+                if (oldest.getValue().isEmpty()) orphans.remove(oldest.getKey());
+                --orphansCount;
+            }
+        }
+    }
+
+    /**
+     * @return orphans which parent is the given block, removed from the orphans
+     */
+    private List<BlockWrapper> takeOrphans(byte[] parentHash) {
+        List<BlockWrapper> children;
+        synchronized (orphans) {
+            children = orphans.remove(new ByteArrayWrapper(parentHash));
+            if (children == null) return new ArrayList<>();
 
+            orphansCount -= children.size();
         }
+        for (BlockWrapper wrapper : children) {
+            wrapper.resetImportFail();
+        }
+        return children;
     }
 
     /**
@@ -407,11 +537,15 @@ public class SyncQueue {
     }
 
     public boolean isBlocksEmpty() {
-        return blockQueue.isEmpty();
+        return blockQueue.isEmpty() && importQueue.isEmpty();
     }
 
     public boolean isMoreBlocksNeeded() {
-        return blockQueue.size() < BLOCK_QUEUE_LIMIT;
+        int orphansCount;
+        synchronized (orphans) {
+            orphansCount = this.orphansCount;
+        }
+        return blockQueue.size() + orphansCount < BLOCK_QUEUE_LIMIT;
     }
 
     public void clearHashes() {
@@ -455,7 +589,8 @@ public class SyncQueue {
      * @return true if queue contains solid blocks, false otherwise
      */
     public boolean hasSolidBlocks() {
-        BlockWrapper wrapper = blockQueue.peek();
+        BlockWrapper wrapper = importQueue.peek();
+        if (wrapper == null) wrapper = blockQueue.peek();
         return wrapper != null && wrapper.isSolidBlock();
     }
 
@@ -467,7 +602,20 @@ public class SyncQueue {
      * @return true if block exists, false otherwise
      */
     public boolean isBlockExist(byte[] hash) {
-        return blockQueue.isBlockExist(hash);
+        if (blockQueue.isBlockExist(hash)) return true;
+
+        for (BlockWrapper wrapper : importQueue) {
+            if (Arrays.equals(wrapper.getHash(), hash)) return true;
+        }
+
+        synchronized (orphans) {
+            for (List<BlockWrapper> children : orphans.values()) {
+                for (BlockWrapper wrapper : children) {
+                    if (Arrays.equals(wrapper.getHash(), hash)) return true;
+                }
+            }
+        }
+        return false;
     }
 
     /**
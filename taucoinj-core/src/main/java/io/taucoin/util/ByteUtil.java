@@ -386,6 +386,23 @@ public class ByteUtil {
         return (i >= startIndex || bytes[startIndex] != 0);
     }
 
+    /**
+     * Smallest array which is greater than any array starting with the prefix
+     *
+     * @param prefix byte[]
+     * @return exclusive upper bound of the prefix range
+     *         or <code>null</code> if the prefix consists of 0xFF bytes only
+     */
+    public static byte[] prefixUpperBound(byte[] prefix) {
+        int len = prefix.length;
+        while (len > 0 && prefix[len - 1] == (byte) 0xFF) --len;
+        if (len == 0) return null;
+
+        byte[] bound = Arrays.copyOf(prefix, len);
+        ++bound[len - 1];
+        return bound;
+    }
+
     /**
      * Utility function to copy a byte array into a new byte array with given size.
      * If the src length is smaller than the given size, the result will be left-padded
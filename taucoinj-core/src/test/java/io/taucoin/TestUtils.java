@@ -0,0 +1,42 @@
+package io.taucoin;
+
+import io.taucoin.core.Transaction;
+import io.taucoin.crypto.ECKey;
+
+import java.math.BigInteger;
+
+import static io.taucoin.crypto.HashUtil.sha3;
+import static io.taucoin.util.ByteUtil.longToBytes;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public final class TestUtils {
+
+    public static final byte[] SENDER_KEY = sha3("sender".getBytes());
+    public static final byte[] SENDER = ECKey.fromPrivate(SENDER_KEY).getAddress();
+    public static final byte[] RECEIVER = ECKey.fromPrivate(sha3("receiver".getBytes())).getAddress();
+
+    private TestUtils() {
+    }
+
+    /**
+     * @return a transfer to RECEIVER signed with the key
+     */
+    public static Transaction createTransaction(byte[] senderKey, long time, long amount, long fee) {
+        return sign(new Transaction((byte) 1, (byte) 1, longToBytes(time), RECEIVER,
+                BigInteger.valueOf(amount).toByteArray(), BigInteger.valueOf(fee).toByteArray()), senderKey);
+    }
+
+    public static Transaction createTransaction(byte[] senderKey, long time, long amount, long fee, long expireTime) {
+        return sign(new Transaction((byte) 1, (byte) 1, longToBytes(time), RECEIVER,
+                BigInteger.valueOf(amount).toByteArray(), BigInteger.valueOf(fee).toByteArray(),
+                longToBytes(expireTime)), senderKey);
+    }
+
+    private static Transaction sign(Transaction tx, byte[] senderKey) {
+        tx.sign(senderKey);
+        return tx;
+    }
+}
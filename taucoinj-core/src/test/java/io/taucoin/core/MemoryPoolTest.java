@@ -0,0 +1,94 @@
+package io.taucoin.core;
+
+import io.taucoin.crypto.ECKey;
+import org.junit.Test;
+
+import java.util.List;
+
+import static io.taucoin.TestUtils.createTransaction;
+import static io.taucoin.crypto.HashUtil.sha3;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class MemoryPoolTest {
+
+    private static final byte[] ALICE = sha3("alice".getBytes());
+    private static final byte[] BOB = sha3("bob".getBytes());
+
+    private static Transaction tx(byte[] senderKey, long time, long fee) {
+        return createTransaction(senderKey, time, 10, fee);
+    }
+
+    @Test
+    public void higherFeeGoesFirstThenOlder() {
+        MemoryPool pool = new MemoryPool(10);
+        Transaction cheap = tx(ALICE, 100, 1);
+        Transaction newer = tx(BOB, 200, 5);
+        Transaction older = tx(ALICE, 150, 5);
+        pool.add(MemoryPoolEntry.with(cheap));
+        pool.add(MemoryPoolEntry.with(newer));
+        pool.add(MemoryPoolEntry.with(older));
+
+        List<Transaction> txs = pool.getTransactions();
+
+        assertEquals(3, txs.size());
+        assertArrayEquals(older.getHash(), txs.get(0).getHash());
+        assertArrayEquals(newer.getHash(), txs.get(1).getHash());
+        assertArrayEquals(cheap.getHash(), txs.get(2).getHash());
+    }
+
+    @Test
+    public void lowestPriorityIsDroppedAtCapacity() {
+        MemoryPool pool = new MemoryPool(2);
+        Transaction cheap = tx(ALICE, 100, 1);
+        assertNull(pool.add(MemoryPoolEntry.with(cheap)));
+        assertNull(pool.add(MemoryPoolEntry.with(tx(BOB, 100, 3))));
+
+        MemoryPoolEntry dropped = pool.add(MemoryPoolEntry.with(tx(BOB, 110, 2)));
+
+        assertArrayEquals(cheap.getHash(), dropped.hash.getData());
+        assertEquals(2, pool.size());
+        assertFalse(pool.contains(cheap.getHash()));
+        assertTrue(pool.getSenderTransactions(ECKey.fromPrivate(ALICE).getAddress()).isEmpty());
+
+        // an entry lower than everything in a full pool is dropped right away
+        Transaction cheaper = tx(ALICE, 120, 0);
+        dropped = pool.add(MemoryPoolEntry.with(cheaper));
+        assertArrayEquals(cheaper.getHash(), dropped.hash.getData());
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void duplicateIsIgnored() {
+        MemoryPool pool = new MemoryPool(1);
+        Transaction tx = tx(ALICE, 100, 1);
+        pool.add(MemoryPoolEntry.with(tx));
+
+        assertNull(pool.add(MemoryPoolEntry.with(tx)));
+        assertEquals(1, pool.size());
+    }
+
+    @Test
+    public void senderTransactionsGoOldestFirst() {
+        MemoryPool pool = new MemoryPool(10);
+        Transaction second = tx(ALICE, 200, 9);
+        Transaction first = tx(ALICE, 100, 1);
+        pool.add(MemoryPoolEntry.with(second));
+        pool.add(MemoryPoolEntry.with(tx(BOB, 150, 5)));
+        pool.add(MemoryPoolEntry.with(first));
+
+        byte[] alice = ECKey.fromPrivate(ALICE).getAddress();
+        List<Transaction> txs = pool.getSenderTransactions(alice);
+        assertEquals(2, txs.size());
+        assertArrayEquals(first.getHash(), txs.get(0).getHash());
+        assertArrayEquals(second.getHash(), txs.get(1).getHash());
+
+        assertNotNull(pool.remove(first.getHash()));
+        assertNull(pool.remove(first.getHash()));
+        assertEquals(1, pool.getSenderTransactions(alice).size());
+        assertEquals(1, pool.getSenderTransactions(ECKey.fromPrivate(BOB).getAddress()).size());
+    }
+}
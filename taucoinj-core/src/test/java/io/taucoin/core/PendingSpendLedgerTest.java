@@ -0,0 +1,157 @@
+package io.taucoin.core;
+
+import io.taucoin.datasource.HashMapDB;
+import io.taucoin.db.IndexedBlockStore;
+import io.taucoin.db.RepositoryImpl;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+
+import static io.taucoin.TestUtils.SENDER;
+import static io.taucoin.TestUtils.SENDER_KEY;
+import static io.taucoin.TestUtils.createTransaction;
+import static io.taucoin.config.SystemProperties.CONFIG;
+import static io.taucoin.crypto.HashUtil.sha3;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class PendingSpendLedgerTest {
+
+    private static final byte[] FORGER_KEY = sha3("forger".getBytes());
+
+    private final int poolCapacity = CONFIG.txPoolCapacity();
+
+    // the chain the pending state sees, its last block is the best one
+    private final List<Block> chain = new ArrayList<>();
+    private IndexedBlockStore blockStore;
+    private BlockchainImpl blockchain;
+
+    @Before
+    public void setup() {
+        blockStore = new IndexedBlockStore();
+        blockStore.init(new HashMap<Long, List<IndexedBlockStore.BlockInfo>>(), new HashMapDB(), null, null);
+        blockchain = new BlockchainImpl();
+    }
+
+    @After
+    public void restoreConfig() {
+        CONFIG.overrideParams("transaction.pool.capacity", String.valueOf(poolCapacity));
+    }
+
+    private static Transaction tx(long time, long amount, long fee, long expireTime) {
+        return createTransaction(SENDER_KEY, time, amount, fee, expireTime);
+    }
+
+    private void extendChain(int blocks, long time) {
+        for (int i = 0; i < blocks; ++i) {
+            Block parent = chain.isEmpty() ? null : chain.get(chain.size() - 1);
+            Block block = new Block((byte) 1, BigInteger.valueOf(time).toByteArray(),
+                    parent == null ? new byte[20] : parent.getHash(), (byte) 1, Collections.<Transaction>emptyList());
+            block.setNumber(chain.size());
+            block.setBaseTarget(BigInteger.ONE);
+            block.setCumulativeDifficulty(BigInteger.valueOf(block.getNumber()));
+            block.sign(FORGER_KEY);
+
+            blockStore.saveBlock(block, block.getCumulativeDifficulty(), true);
+            blockchain.setBestBlock(block);
+            chain.add(block);
+        }
+    }
+
+    private PendingStateImpl pendingState(long balance) {
+        RepositoryImpl repository = new RepositoryImpl(new HashMapDB());
+        Repository track = repository.startTracking();
+        track.createAccount(SENDER).addToBalance(BigInteger.valueOf(balance));
+        track.commit();
+
+        PendingStateImpl pendingState = new PendingStateImpl(repository, blockStore);
+        pendingState.setBlockchain(blockchain);
+        pendingState.init();
+        return pendingState;
+    }
+
+    private static List<Transaction> add(PendingStateImpl pendingState, Transaction tx) {
+        return pendingState.addWireTransactions(new HashSet<>(Collections.singletonList(tx)));
+    }
+
+    @Test
+    public void reservedSpendIsCheckedAgainstBalance() {
+        PendingSpendLedger ledger = new PendingSpendLedger();
+        BigInteger balance = BigInteger.valueOf(100);
+
+        assertTrue(ledger.reserve(SENDER, BigInteger.valueOf(60), balance));
+        assertFalse(ledger.reserve(SENDER, BigInteger.valueOf(50), balance));
+        assertTrue(ledger.reserve(SENDER, BigInteger.valueOf(40), balance));
+
+        assertEquals(BigInteger.valueOf(100), ledger.getSpend(SENDER));
+        assertEquals(2, ledger.getCount(SENDER));
+    }
+
+    @Test
+    public void senderIsDroppedWithItsLastRelease() {
+        PendingSpendLedger ledger = new PendingSpendLedger();
+        BigInteger balance = BigInteger.valueOf(100);
+
+        // a sender which can't afford its first transaction isn't kept
+        assertFalse(ledger.reserve(SENDER, BigInteger.valueOf(101), balance));
+        assertEquals(0, ledger.size());
+
+        ledger.reserve(SENDER, BigInteger.valueOf(60), balance);
+        ledger.reserve(SENDER, BigInteger.valueOf(40), balance);
+
+        ledger.release(SENDER, BigInteger.valueOf(60));
+        assertEquals(BigInteger.valueOf(40), ledger.getSpend(SENDER));
+        assertEquals(1, ledger.size());
+
+        ledger.release(SENDER, BigInteger.valueOf(40));
+        assertEquals(0, ledger.size());
+        assertEquals(BigInteger.ZERO, ledger.getSpend(SENDER));
+
+        // releasing more than reserved is ignored
+        ledger.release(SENDER, BigInteger.valueOf(40));
+        assertEquals(0, ledger.getCount(SENDER));
+    }
+
+    @Test
+    public void evictedTransactionIsReleased() {
+        CONFIG.overrideParams("transaction.pool.capacity", "1");
+        extendChain(1, 100);
+        PendingStateImpl pendingState = pendingState(30);
+
+        assertEquals(1, add(pendingState, tx(1000, 10, 1, 10)).size());
+        // takes the only slot of the pool, the first one is evicted
+        assertEquals(1, add(pendingState, tx(1001, 10, 5, 10)).size());
+
+        // fits in the balance only if the evicted spend is back
+        Transaction tx = tx(1002, 9, 6, 10);
+        assertEquals(1, add(pendingState, tx).size());
+        assertTrue(pendingState.getWireTransactions().contains(tx));
+    }
+
+    @Test
+    public void outdatedTransactionIsReleased() {
+        extendChain(1, 100);
+        PendingStateImpl pendingState = pendingState(20);
+
+        Transaction outdated = tx(1000, 10, 5, 2);
+        assertEquals(1, add(pendingState, outdated).size());
+        assertTrue(add(pendingState, tx(1001, 10, 5, 2)).isEmpty());
+
+        // the block two below the best one is younger than the transaction
+        extendChain(3, 2000);
+        pendingState.processBest(chain.get(chain.size() - 1));
+
+        assertFalse(pendingState.getWireTransactions().contains(outdated));
+        assertEquals(1, add(pendingState, tx(2001, 10, 10, 2)).size());
+    }
+}
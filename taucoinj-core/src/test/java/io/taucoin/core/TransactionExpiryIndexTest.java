@@ -0,0 +1,78 @@
+package io.taucoin.core;
+
+import org.junit.Test;
+
+import java.util.Collections;
+import java.util.List;
+
+import static io.taucoin.TestUtils.SENDER_KEY;
+import static io.taucoin.TestUtils.createTransaction;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class TransactionExpiryIndexTest {
+
+    private static Transaction tx(long time, long expireTime) {
+        return createTransaction(SENDER_KEY, time, 10, 1, expireTime);
+    }
+
+    @Test
+    public void transactionsAreBucketedByExpireTime() {
+        TransactionExpiryIndex index = new TransactionExpiryIndex();
+        index.add(tx(100, 10));
+        index.add(tx(200, 10));
+        index.add(tx(100, 20));
+
+        List<Long> expireTimes = index.getExpireTimes();
+        Collections.sort(expireTimes);
+
+        assertEquals(3, index.size());
+        assertEquals(2, expireTimes.size());
+        assertEquals(Long.valueOf(10), expireTimes.get(0));
+        assertEquals(Long.valueOf(20), expireTimes.get(1));
+    }
+
+    @Test
+    public void onlyOlderThanBenchTimeAreOutdated() {
+        TransactionExpiryIndex index = new TransactionExpiryIndex();
+        Transaction old = tx(100, 10);
+        Transaction bench = tx(150, 10);
+        Transaction other = tx(100, 20);
+        index.add(old);
+        index.add(bench);
+        index.add(other);
+
+        List<Transaction> outdated = index.pollOutdated(10, 150);
+
+        assertEquals(1, outdated.size());
+        assertEquals(old, outdated.get(0));
+        assertEquals(2, index.size());
+
+        // polled transactions are gone, the other bucket is untouched
+        assertTrue(index.pollOutdated(10, 150).isEmpty());
+        assertEquals(1, index.pollOutdated(20, 150).size());
+        assertEquals(1, index.size());
+    }
+
+    @Test
+    public void emptyBucketsAreDropped() {
+        TransactionExpiryIndex index = new TransactionExpiryIndex();
+        Transaction tx = tx(100, 10);
+        index.add(tx);
+        index.add(tx);
+        assertEquals(1, index.size());
+
+        index.remove(tx);
+        index.remove(tx);
+
+        assertEquals(0, index.size());
+        assertTrue(index.getExpireTimes().isEmpty());
+
+        index.add(tx(100, 20));
+        index.pollOutdated(20, 101);
+        assertTrue(index.getExpireTimes().isEmpty());
+    }
+}
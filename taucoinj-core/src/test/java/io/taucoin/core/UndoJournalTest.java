@@ -0,0 +1,124 @@
+package io.taucoin.core;
+
+import io.taucoin.crypto.ECKey;
+import io.taucoin.datasource.HashMapDB;
+import io.taucoin.db.RepositoryImpl;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.Collections;
+import java.util.List;
+
+import static io.taucoin.TestUtils.RECEIVER;
+import static io.taucoin.TestUtils.SENDER;
+import static io.taucoin.TestUtils.SENDER_KEY;
+import static io.taucoin.TestUtils.createTransaction;
+import static io.taucoin.crypto.HashUtil.sha3;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class UndoJournalTest {
+
+    private static final byte[] FORGER = ECKey.fromPrivate(sha3("forger".getBytes())).getAddress();
+
+    private RepositoryImpl repository;
+
+    private static byte[] hash(int b) {
+        byte[] hash = new byte[32];
+        hash[31] = (byte) b;
+        return hash;
+    }
+
+    @Before
+    public void setup() {
+        repository = new RepositoryImpl(new HashMapDB());
+
+        Repository track = repository.startTracking();
+        AccountState sender = track.createAccount(SENDER);
+        sender.addToBalance(BigInteger.valueOf(100));
+        sender.addTransactionHistory(10, hash(1));
+        sender.addTransactionHistory(20, hash(2));
+        track.createAccount(FORGER).addToBalance(BigInteger.valueOf(5));
+        track.commit();
+    }
+
+    private static Block block(long txTime) {
+        Transaction tx = createTransaction(SENDER_KEY, txTime, 10, 1);
+
+        return new Block((byte) 1, BigInteger.valueOf(txTime).toByteArray(), new byte[20],
+                (byte) 1, Collections.singletonList(tx));
+    }
+
+    /**
+     * Does to the state what executing the block would,
+     * including the oldest sender entry sliding out of the history
+     */
+    private void apply(Block block) {
+        Transaction tx = block.getTransactionsList().get(0);
+        Repository track = repository.startTracking();
+
+        AccountState sender = track.getAccountState(SENDER);
+        sender.subFromBalance(BigInteger.valueOf(11));
+        sender.addTransactionHistory(30, tx.getHash());
+        sender.removeTransactionHistory(track.getTransactionHistory(SENDER, 0, Long.MAX_VALUE, 1).get(0));
+
+        track.createAccount(RECEIVER).addToBalance(BigInteger.TEN);
+        track.getAccountState(FORGER).addToBalance(BigInteger.ONE);
+        track.commit();
+    }
+
+    private void undo(UndoJournal journal) {
+        Repository track = repository.startTracking();
+        journal.undo(track);
+        track.commit();
+    }
+
+    private void assertInitialState() {
+        assertEquals(BigInteger.valueOf(100), repository.getBalance(SENDER));
+        assertEquals(BigInteger.valueOf(5), repository.getBalance(FORGER));
+        assertFalse(repository.isExist(RECEIVER));
+
+        AccountState sender = repository.getAccountState(SENDER);
+        assertEquals(2, sender.getHistorySize());
+        assertEquals(20, sender.getHistoryLastTime());
+
+        List<TransactionInfo> history = repository.getTransactionHistory(SENDER, 0, Long.MAX_VALUE, 10);
+        assertEquals(2, history.size());
+        assertArrayEquals(hash(1), history.get(0).gettrHashcode());
+        assertArrayEquals(hash(2), history.get(1).gettrHashcode());
+    }
+
+    @Test
+    public void undoRestoresStateBeforeBlock() {
+        Block block = block(30);
+        UndoJournal journal = UndoJournal.record(block, repository, FORGER);
+        apply(block);
+
+        assertEquals(BigInteger.valueOf(89), repository.getBalance(SENDER));
+        List<TransactionInfo> history = repository.getTransactionHistory(SENDER, 0, Long.MAX_VALUE, 10);
+        assertEquals(2, history.size());
+        assertArrayEquals(hash(2), history.get(0).gettrHashcode());
+        assertArrayEquals(block.getTransactionsList().get(0).getHash(), history.get(1).gettrHashcode());
+        assertTrue(repository.isExist(RECEIVER));
+
+        undo(journal);
+
+        assertInitialState();
+    }
+
+    @Test
+    public void journalSurvivesEncoding() {
+        Block block = block(30);
+        byte[] encoded = UndoJournal.record(block, repository, FORGER).getEncoded();
+        apply(block);
+
+        undo(new UndoJournal(encoded));
+
+        assertInitialState();
+        assertArrayEquals(encoded, new UndoJournal(encoded).getEncoded());
+    }
+}
@@ -0,0 +1,95 @@
+package io.taucoin.datasource;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static io.taucoin.util.ByteUtil.prefixUpperBound;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class SortedKeysIteratorTest {
+
+    private HashMapDB db;
+
+    @Before
+    public void setup() {
+        db = new HashMapDB();
+        for (int b : new int[] {0x7f, 0x01, 0xff, 0x80, 0x10}) {
+            db.put(new byte[] {(byte) b}, new byte[] {(byte) b});
+            db.put(new byte[] {(byte) b, 0x00}, new byte[] {(byte) b, 0x00});
+        }
+    }
+
+    private static List<String> keys(KeyValueIterator it) {
+        List<String> keys = new ArrayList<>();
+        try {
+            while (it.hasNext()) {
+                StringBuilder key = new StringBuilder();
+                for (byte b : it.next().getKey()) key.append(String.format("%02x", b));
+                keys.add(key.toString());
+            }
+        } finally {
+            it.close();
+        }
+        return keys;
+    }
+
+    @Test
+    public void keysGoInUnsignedOrder() {
+        List<String> keys = keys(db.iterator(null, null, false));
+
+        assertEquals(10, keys.size());
+        assertEquals("01", keys.get(0));
+        assertEquals("0100", keys.get(1));
+        assertEquals("7f00", keys.get(5));
+        assertEquals("80", keys.get(6));
+        assertEquals("ff00", keys.get(9));
+    }
+
+    @Test
+    public void rangeIncludesFromAndExcludesTo() {
+        List<String> keys = keys(db.iterator(new byte[] {0x10}, new byte[] {(byte) 0x80}, false));
+
+        assertEquals(4, keys.size());
+        assertEquals("10", keys.get(0));
+        assertEquals("7f00", keys.get(3));
+    }
+
+    @Test
+    public void reverseGoesFromUpperBoundDown() {
+        List<String> keys = keys(db.iterator(new byte[] {0x10}, new byte[] {(byte) 0x80}, true));
+
+        assertEquals(4, keys.size());
+        assertEquals("7f00", keys.get(0));
+        assertEquals("10", keys.get(3));
+    }
+
+    @Test
+    public void prefixScanStopsAtUpperBound() {
+        byte[] prefix = {(byte) 0xff};
+        List<String> keys = keys(db.iterator(prefix, prefixUpperBound(prefix), false));
+
+        assertEquals(2, keys.size());
+        assertEquals("ff", keys.get(0));
+        assertEquals("ff00", keys.get(1));
+    }
+
+    @Test
+    public void keysRemovedAfterSnapshotAreSkipped() {
+        KeyValueIterator it = db.iterator(null, null, false);
+        db.delete(new byte[] {0x01});
+        db.delete(new byte[] {(byte) 0xff, 0x00});
+
+        List<String> keys = keys(it);
+
+        assertEquals(8, keys.size());
+        assertFalse(keys.contains("01"));
+        assertFalse(keys.contains("ff00"));
+    }
+}
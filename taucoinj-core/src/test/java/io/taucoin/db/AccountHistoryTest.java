@@ -0,0 +1,139 @@
+package io.taucoin.db;
+
+import io.taucoin.core.AccountState;
+import io.taucoin.core.Repository;
+import io.taucoin.core.TransactionInfo;
+import io.taucoin.datasource.HashMapDB;
+import io.taucoin.util.RLP;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class AccountHistoryTest {
+
+    private static final byte[] ADDRESS = address(1);
+
+    private static byte[] address(int b) {
+        byte[] address = new byte[20];
+        address[19] = (byte) b;
+        return address;
+    }
+
+    private static byte[] hash(int b) {
+        byte[] hash = new byte[32];
+        hash[31] = (byte) b;
+        return hash;
+    }
+
+    @Test
+    public void historyIsReadByTimeRange() {
+        RepositoryImpl repository = new RepositoryImpl(new HashMapDB());
+
+        Repository track = repository.startTracking();
+        AccountState account = track.createAccount(ADDRESS);
+        account.addTransactionHistory(30, hash(3));
+        account.addTransactionHistory(10, hash(1));
+        account.addTransactionHistory(20, hash(2));
+        account.addTransactionHistory(20, hash(4));
+
+        // the track answers from its pending entries
+        assertEquals(2, track.getTransactionHistory(ADDRESS, 20, 21, Integer.MAX_VALUE).size());
+        track.commit();
+
+        List<TransactionInfo> all = repository.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 10);
+        assertEquals(4, all.size());
+        assertEquals(10, all.get(0).gettrTime());
+        assertEquals(30, all.get(3).gettrTime());
+
+        List<TransactionInfo> at20 = repository.getTransactionHistory(ADDRESS, 20, 21, 10);
+        assertEquals(2, at20.size());
+        assertArrayEquals(hash(2), at20.get(0).gettrHashcode());
+        assertArrayEquals(hash(4), at20.get(1).gettrHashcode());
+
+        assertEquals(1, repository.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 1).size());
+        assertTrue(repository.getTransactionHistory(address(2), 0, Long.MAX_VALUE, 10).isEmpty());
+        assertEquals(4, repository.getAccountState(ADDRESS).getHistorySize());
+        assertEquals(30, repository.getAccountState(ADDRESS).getHistoryLastTime());
+    }
+
+    @Test
+    public void removedEntriesAreHiddenAndDeleted() {
+        RepositoryImpl repository = new RepositoryImpl(new HashMapDB());
+
+        Repository track = repository.startTracking();
+        AccountState account = track.createAccount(ADDRESS);
+        account.addTransactionHistory(10, hash(1));
+        account.addTransactionHistory(20, hash(2));
+        track.commit();
+
+        track = repository.startTracking();
+        account = track.getAccountState(ADDRESS);
+        TransactionInfo oldest = track.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 1).get(0);
+        account.removeTransactionHistory(oldest);
+
+        List<TransactionInfo> left = track.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 1);
+        assertEquals(1, left.size());
+        assertEquals(20, left.get(0).gettrTime());
+
+        // nothing is written before the commit
+        assertEquals(2, repository.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 10).size());
+        track.commit();
+        assertEquals(1, repository.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 10).size());
+    }
+
+    private static byte[] legacyRecord(TransactionInfo... history) {
+        byte[][] items = new byte[history.length + 2][];
+        items[0] = RLP.encodeBigInteger(BigInteger.ONE);
+        items[1] = RLP.encodeBigInteger(BigInteger.TEN);
+        for (int i = 0; i < history.length; ++i) {
+            items[i + 2] = history[i].getEncoded();
+        }
+        return RLP.encodeList(items);
+    }
+
+    @Test
+    public void oldRecordsAreMigrated() {
+        HashMapDB db = new HashMapDB();
+        db.put(ADDRESS, legacyRecord(new TransactionInfo(10, hash(1)), new TransactionInfo(20, hash(2))));
+
+        RepositoryImpl repository = new RepositoryImpl(db);
+
+        assertFalse(AccountState.isLegacyEncoded(db.get(ADDRESS)));
+        AccountState account = repository.getAccountState(ADDRESS);
+        assertEquals(BigInteger.TEN, account.getBalance());
+        assertEquals(2, account.getHistorySize());
+        assertEquals(20, account.getHistoryLastTime());
+
+        List<TransactionInfo> history = repository.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 10);
+        assertEquals(2, history.size());
+        assertArrayEquals(hash(1), history.get(0).gettrHashcode());
+        assertArrayEquals(hash(2), history.get(1).gettrHashcode());
+    }
+
+    @Test
+    public void interruptedMigrationIsResumed() {
+        HashMapDB db = new HashMapDB();
+        db.put(ADDRESS, legacyRecord(new TransactionInfo(10, hash(1)), new TransactionInfo(20, hash(2))));
+        new RepositoryImpl(db);
+
+        // another old record left behind and no marker, as if the first start stopped short
+        db.put(address(2), legacyRecord(new TransactionInfo(30, hash(3))));
+        db.delete("historyFormat".getBytes());
+
+        RepositoryImpl repository = new RepositoryImpl(db);
+
+        assertEquals(2, repository.getTransactionHistory(ADDRESS, 0, Long.MAX_VALUE, 10).size());
+        assertEquals(2, repository.getAccountState(ADDRESS).getHistorySize());
+        List<TransactionInfo> history = repository.getTransactionHistory(address(2), 0, Long.MAX_VALUE, 10);
+        assertEquals(1, history.size());
+        assertArrayEquals(hash(3), history.get(0).gettrHashcode());
+        assertNotNull(db.get("historyFormat".getBytes()));
+    }
+}
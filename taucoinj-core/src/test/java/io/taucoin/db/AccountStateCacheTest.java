@@ -0,0 +1,103 @@
+package io.taucoin.db;
+
+import io.taucoin.core.AccountState;
+import io.taucoin.datasource.HashMapDB;
+import org.junit.Test;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class AccountStateCacheTest {
+
+    private static byte[] address(int b) {
+        byte[] address = new byte[20];
+        address[19] = (byte) b;
+        return address;
+    }
+
+    private static AccountState state(long balance) {
+        AccountState state = new AccountState();
+        state.addToBalance(BigInteger.valueOf(balance));
+        return state;
+    }
+
+    @Test
+    public void leastRecentlyUsedIsEvictedBySize() {
+        int weight = state(1).getEncoded().length;
+        AccountStateCache cache = new AccountStateCache(weight * 2);
+
+        cache.put(address(1), state(1));
+        cache.put(address(2), state(2));
+        assertNotNull(cache.get(address(1)));
+
+        cache.put(address(3), state(3));
+
+        assertEquals(2, cache.getEntryCount());
+        assertEquals(weight * 2, cache.getSize());
+        assertEquals(1, cache.getEvictionCount());
+        assertNull(cache.get(address(2)));
+        assertNotNull(cache.get(address(1)));
+        assertNotNull(cache.get(address(3)));
+    }
+
+    @Test
+    public void fillAfterWriteIsRejected() {
+        AccountStateCache cache = new AccountStateCache(1024);
+
+        long stamp = cache.stamp();
+        cache.invalidate(address(1));
+
+        // the reader loaded the state before the invalidation
+        cache.fill(address(1), state(1), stamp);
+        assertNull(cache.get(address(1)));
+
+        cache.fill(address(1), state(2), cache.stamp());
+        assertEquals(BigInteger.valueOf(2), cache.get(address(1)).getBalance());
+    }
+
+    @Test
+    public void oversizedStateIsNotCached() {
+        AccountStateCache cache = new AccountStateCache(1);
+
+        cache.put(address(1), state(1));
+
+        assertEquals(0, cache.getEntryCount());
+        assertEquals(0, cache.getSize());
+        assertEquals(0.0, cache.getHitRate(), 0);
+    }
+
+    @Test
+    public void cachedStateIsNotSharedWithWriters() {
+        RepositoryImpl repository = new RepositoryImpl(new HashMapDB());
+        byte[] addr = address(1);
+
+        // the created account isn't the cached one, changing it is a no-op
+        repository.createAccount(addr).addToBalance(BigInteger.TEN);
+        AccountState cached = repository.getAccountState(addr);
+        assertEquals(BigInteger.ZERO, cached.getBalance());
+
+        repository.addBalance(addr, BigInteger.ONE);
+        assertEquals(BigInteger.ZERO, cached.getBalance());
+        assertEquals(BigInteger.ONE, repository.getBalance(addr));
+    }
+
+    @Test
+    public void hitsAndMissesAreCounted() {
+        AccountStateCache cache = new AccountStateCache(1024);
+        cache.put(address(1), state(1));
+
+        cache.get(address(1));
+        cache.get(address(2));
+        cache.invalidateAll();
+        cache.get(address(1));
+
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+        assertEquals(0, cache.getSize());
+    }
+}
@@ -0,0 +1,99 @@
+package io.taucoin.db;
+
+import io.taucoin.db.IndexedBlockStore.BlockInfo;
+import org.junit.Test;
+import org.mapdb.DB;
+import org.mapdb.DBMaker;
+import org.mapdb.Serializer;
+
+import java.io.*;
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static io.taucoin.db.IndexedBlockStore.BLOCK_INFO_SERIALIZER;
+import static io.taucoin.db.IndexedBlockStore.LEGACY_BLOCK_INFO_SERIALIZER;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class BlockInfoSerializerTest {
+
+    private static BlockInfo blockInfo(int b, BigInteger cummDifficulty, boolean mainChain) {
+        byte[] hash = new byte[20];
+        hash[0] = (byte) b;
+
+        BlockInfo blockInfo = new BlockInfo();
+        blockInfo.setHash(hash);
+        blockInfo.setCummDifficulty(cummDifficulty);
+        blockInfo.setMainChain(mainChain);
+        return blockInfo;
+    }
+
+    private static List<BlockInfo> level() {
+        List<BlockInfo> level = new ArrayList<>();
+        level.add(blockInfo(1, BigInteger.ZERO, false));
+        level.add(blockInfo(2, new BigInteger("123456789012345678901234567890"), true));
+        return level;
+    }
+
+    private static void assertLevel(List<BlockInfo> expected, List<BlockInfo> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); ++i) {
+            assertArrayEquals(expected.get(i).getHash(), actual.get(i).getHash());
+            assertEquals(expected.get(i).getCummDifficulty(), actual.get(i).getCummDifficulty());
+            assertEquals(expected.get(i).isMainChain(), actual.get(i).isMainChain());
+        }
+    }
+
+    @Test
+    public void levelSurvivesRoundTrip() throws IOException {
+        List<BlockInfo> level = level();
+
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BLOCK_INFO_SERIALIZER.serialize(new DataOutputStream(bos), level);
+        byte[] data = bos.toByteArray();
+
+        List<BlockInfo> decoded = BLOCK_INFO_SERIALIZER.deserialize(
+                new DataInputStream(new ByteArrayInputStream(data)), data.length);
+
+        assertLevel(level, decoded);
+    }
+
+    @Test
+    public void emptyLevelSurvivesRoundTrip() throws IOException {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        BLOCK_INFO_SERIALIZER.serialize(new DataOutputStream(bos), new ArrayList<BlockInfo>());
+        byte[] data = bos.toByteArray();
+
+        assertEquals(1, data.length);
+        assertTrue(BLOCK_INFO_SERIALIZER.deserialize(
+                new DataInputStream(new ByteArrayInputStream(data)), data.length).isEmpty());
+    }
+
+    @Test
+    public void legacyIndexIsMigrated() {
+        DB indexDB = DBMaker.memoryDB().make();
+
+        Map<Long, List<BlockInfo>> legacyIndex = indexDB.hashMapCreate("index")
+                .keySerializer(Serializer.LONG)
+                .valueSerializer(LEGACY_BLOCK_INFO_SERIALIZER)
+                .counterEnable()
+                .make();
+        legacyIndex.put(0L, level());
+        legacyIndex.put(1L, level());
+        indexDB.commit();
+
+        Map<Long, List<BlockInfo>> index = IndexedBlockStore.openIndex(indexDB);
+
+        assertFalse(indexDB.exists("index"));
+        assertEquals(2, index.size());
+        assertLevel(level(), index.get(1L));
+
+        // the next open finds nothing to migrate
+        assertEquals(2, IndexedBlockStore.openIndex(indexDB).size());
+    }
+}
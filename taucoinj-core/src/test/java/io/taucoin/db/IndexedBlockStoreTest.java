@@ -0,0 +1,219 @@
+package io.taucoin.db;
+
+import io.taucoin.core.Block;
+import io.taucoin.core.Transaction;
+import io.taucoin.datasource.HashMapDB;
+import io.taucoin.db.IndexedBlockStore.BlockInfo;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static io.taucoin.crypto.HashUtil.sha3;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class IndexedBlockStoreTest {
+
+    private static final byte[] FORGER_KEY = sha3("forger".getBytes());
+
+    private HashMapDB blocks;
+    private Map<Long, List<BlockInfo>> index;
+    private IndexedBlockStore store;
+
+    @Before
+    public void setup() {
+        blocks = new HashMapDB();
+        index = new HashMap<>();
+        store = openStore(index);
+    }
+
+    private IndexedBlockStore openStore(Map<Long, List<BlockInfo>> index) {
+        IndexedBlockStore cache = new IndexedBlockStore();
+        cache.init(new ConcurrentHashMap<Long, List<BlockInfo>>(), null, null, null);
+
+        IndexedBlockStore store = new IndexedBlockStore();
+        store.init(index, blocks, cache, null);
+        return store;
+    }
+
+    private static Block block(Block parent, int time) {
+        byte[] parentHash = parent == null ? new byte[20] : parent.getHash();
+        Block block = new Block((byte) 1, BigInteger.valueOf(time).toByteArray(), parentHash,
+                (byte) 1, Collections.<Transaction>emptyList());
+        block.setNumber(parent == null ? 0 : parent.getNumber() + 1);
+        block.setBaseTarget(BigInteger.ONE);
+        block.setCumulativeDifficulty(BigInteger.valueOf(block.getNumber()));
+        block.sign(FORGER_KEY);
+        return block;
+    }
+
+    private static List<Block> chain(Block parent, int length, int time) {
+        List<Block> chain = new ArrayList<>();
+        for (int i = 0; i < length; ++i) {
+            parent = block(parent, time + i);
+            chain.add(parent);
+        }
+        return chain;
+    }
+
+    private void save(List<Block> chain, boolean mainChain) {
+        for (Block block : chain) {
+            store.saveBlock(block, BigInteger.valueOf(block.getNumber()), mainChain);
+        }
+    }
+
+    @Test
+    public void blocksAreServedFromCacheUntilWrittenOut() {
+        Block genesis = block(null, 100);
+        Block main = block(genesis, 200);
+        Block fork = block(genesis, 300);
+        save(Arrays.asList(genesis, main), true);
+        save(Collections.singletonList(fork), false);
+
+        assertNull(blocks.get(main.getHash()));
+        assertArrayEquals(main.getHash(), store.getBlockByHash(main.getHash()).getHash());
+
+        store.flush();
+        assertNotNull(blocks.get(main.getHash()));
+
+        // the delete hides the stored block until it is written out
+        store.delNonChainBlock(fork.getHash());
+        assertFalse(store.isBlockExist(fork.getHash()));
+        assertNotNull(blocks.get(fork.getHash()));
+
+        store.flush();
+        assertNull(blocks.get(fork.getHash()));
+        assertEquals(1, index.get(1L).size());
+    }
+
+    @Test
+    public void indexNotCommittedIsRecoveredFromJournal() {
+        // the flush stops right after the rows are written out
+        store = openStore(new HashMap<Long, List<BlockInfo>>() {
+            @Override
+            public List<BlockInfo> put(Long key, List<BlockInfo> value) {
+                throw new IllegalStateException("index commit failed");
+            }
+        });
+        List<Block> chain = chain(null, 4, 100);
+        save(chain, true);
+        store.flush();
+
+        IndexedBlockStore restarted = openStore(index);
+        assertNull(restarted.getBlockHashByNumber(3));
+
+        restarted.load();
+
+        assertEquals(3, restarted.getMaxNumber());
+        for (Block block : chain) {
+            assertArrayEquals(block.getHash(), restarted.getBlockHashByNumber(block.getNumber()));
+        }
+    }
+
+    @Test
+    public void blockLostWithCacheCanBeUndone() {
+        List<Block> chain = chain(null, 2, 100);
+        save(chain.subList(0, 1), true);
+        store.flush();
+
+        Block lost = chain.get(1);
+        store.saveUndoJournal(lost.getHash(), new byte[] {1});
+        save(chain.subList(1, 2), true);
+
+        // the cache is gone, the header record and the journal are stored
+        IndexedBlockStore restarted = openStore(index);
+        restarted.load();
+        assertFalse(restarted.isBlockExist(lost.getHash()));
+        assertArrayEquals(new byte[] {1}, restarted.getUndoJournal(lost.getHash()));
+        assertArrayEquals(chain.get(0).getHash(), restarted.getBlockParentHash(lost.getHash()));
+        assertEquals(0, restarted.getMaxNumber());
+    }
+
+    @Test
+    public void flushDropsJournal() {
+        List<Block> chain = chain(null, 3, 100);
+        save(chain, true);
+        store.flush();
+
+        assertEquals(3, index.size());
+
+        // nothing is left to replay over an empty index
+        IndexedBlockStore restarted = openStore(new HashMap<Long, List<BlockInfo>>());
+        restarted.load();
+        assertEquals(-1, restarted.getMaxNumber());
+    }
+
+    @Test
+    public void headerFieldsAreServedWithoutBody() {
+        List<Block> chain = chain(null, 2, 100);
+        save(chain, true);
+        Block block = chain.get(1);
+
+        assertEquals(1, store.getBlockNumber(block.getHash()));
+        assertArrayEquals(chain.get(0).getHash(), store.getBlockParentHash(block.getHash()));
+        assertArrayEquals(block.getTimestamp(), store.getBlockTimestamp(block.getHash()));
+
+        byte[] unknown = sha3("unknown".getBytes());
+        assertEquals(-1, store.getBlockNumber(unknown));
+        assertNull(store.getBlockTimestamp(unknown));
+    }
+
+    @Test
+    public void reBranchFlipsLevelSplitBetweenCacheAndStore() {
+        Block genesis = block(null, 100);
+        List<Block> main = chain(genesis, 2, 200);
+        save(Collections.singletonList(genesis), true);
+        save(main, true);
+        store.flush();
+
+        // the fork blocks are cached while their levels are stored
+        List<Block> fork = chain(genesis, 2, 300);
+        save(fork, false);
+
+        List<Block> undoBlocks = new ArrayList<>(main);
+        Collections.reverse(undoBlocks);
+        List<Block> newBlocks = new ArrayList<>(fork);
+        Collections.reverse(newBlocks);
+        store.reBranchBlocks(undoBlocks, newBlocks);
+
+        assertArrayEquals(fork.get(1).getHash(), store.getBlockHashByNumber(2));
+        assertArrayEquals(fork.get(1).getHash(), store.getChainBlockByNumber(2).getHash());
+
+        store.flush();
+
+        assertArrayEquals(fork.get(0).getHash(), store.getBlockHashByNumber(1));
+        assertArrayEquals(fork.get(1).getHash(), store.getBlockHashByNumber(2));
+        assertEquals(2, index.get(2L).size());
+    }
+
+    @Test
+    public void reBranchLeavesPublishedLevelsUntouched() {
+        Block genesis = block(null, 100);
+        Block main = block(genesis, 200);
+        Block fork = block(genesis, 300);
+        save(Collections.singletonList(genesis), true);
+        save(Collections.singletonList(main), true);
+        save(Collections.singletonList(fork), false);
+        store.flush();
+
+        // a reader holding the stored level keeps seeing it as it was
+        List<BlockInfo> published = index.get(1L);
+        store.reBranchBlocks(Collections.singletonList(main), Collections.singletonList(fork));
+
+        for (BlockInfo blockInfo : published) {
+            assertEquals(Arrays.equals(blockInfo.getHash(), main.getHash()), blockInfo.isMainChain());
+        }
+        assertArrayEquals(fork.getHash(), store.getBlockHashByNumber(1));
+    }
+}
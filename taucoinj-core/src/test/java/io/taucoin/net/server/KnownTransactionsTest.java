@@ -0,0 +1,53 @@
+package io.taucoin.net.server;
+
+import io.taucoin.core.Transaction;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+
+import static io.taucoin.TestUtils.SENDER_KEY;
+import static io.taucoin.TestUtils.createTransaction;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class KnownTransactionsTest {
+
+    private static Transaction tx(long time) {
+        return createTransaction(SENDER_KEY, time, 10, 1);
+    }
+
+    @Test
+    public void leastRecentHashesAreForgottenOverLimit() {
+        KnownTransactions known = new KnownTransactions(2);
+        Transaction tx1 = tx(1);
+        Transaction tx2 = tx(2);
+        Transaction tx3 = tx(3);
+
+        known.addAll(Arrays.asList(tx1, tx2));
+        known.add(tx3.getHash());
+
+        assertEquals(2, known.size());
+        assertFalse(known.contains(tx1.getHash()));
+        assertTrue(known.contains(tx2.getHash()));
+        assertTrue(known.contains(tx3.getHash()));
+    }
+
+    @Test
+    public void onlyUnknownAreReturned() {
+        KnownTransactions known = new KnownTransactions(16);
+        Transaction tx1 = tx(1);
+        Transaction tx2 = tx(2);
+        known.add(tx1.getHash());
+
+        List<Transaction> unknown = known.addUnknown(Arrays.asList(tx1, tx2));
+
+        assertEquals(1, unknown.size());
+        assertArrayEquals(tx2.getHash(), unknown.get(0).getHash());
+        assertTrue(known.addUnknown(Arrays.asList(tx1, tx2)).isEmpty());
+        assertEquals(2, known.size());
+    }
+}
@@ -0,0 +1,156 @@
+package io.taucoin.net.submit;
+
+import io.taucoin.core.Block;
+import io.taucoin.core.BlockchainImpl;
+import io.taucoin.core.PendingStateImpl;
+import io.taucoin.core.Repository;
+import io.taucoin.core.Transaction;
+import io.taucoin.datasource.HashMapDB;
+import io.taucoin.db.RepositoryImpl;
+import io.taucoin.net.server.Channel;
+import io.taucoin.net.server.ChannelManager;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static io.taucoin.TestUtils.SENDER;
+import static io.taucoin.TestUtils.SENDER_KEY;
+import static io.taucoin.TestUtils.createTransaction;
+import static io.taucoin.config.SystemProperties.CONFIG;
+import static org.junit.Assert.*;
+
+/**
+ * @author taucoin core
+ * @since 18.07.2019
+ */
+public class TransactionAdmissionTest {
+
+    private PendingStateImpl pendingState;
+    private TransactionAdmission admission;
+
+    @Before
+    public void setup() {
+        RepositoryImpl repository = new RepositoryImpl(new HashMapDB());
+        Repository track = repository.startTracking();
+        track.createAccount(SENDER).addToBalance(BigInteger.valueOf(1000));
+        track.commit();
+
+        Block best = new Block((byte) 1, BigInteger.valueOf(100).toByteArray(), new byte[20],
+                (byte) 1, Collections.<Transaction>emptyList());
+        BlockchainImpl blockchain = new BlockchainImpl();
+        blockchain.setBestBlock(best);
+
+        pendingState = new PendingStateImpl(repository, null);
+        pendingState.setBlockchain(blockchain);
+        pendingState.init();
+
+        admission = new TransactionAdmission();
+        admission.config = CONFIG;
+        admission.pendingState = pendingState;
+        admission.channelManager = new ChannelManager();
+        admission.init();
+    }
+
+    @After
+    public void close() {
+        admission.close();
+    }
+
+    private static Transaction tx(long time) {
+        return createTransaction(SENDER_KEY, time, 10, 1);
+    }
+
+    private static List<byte[]> hashes(Transaction... txs) {
+        List<byte[]> hashes = new ArrayList<>();
+        for (Transaction tx : txs) {
+            hashes.add(tx.getHash());
+        }
+        return hashes;
+    }
+
+    @Test
+    public void announcedTransactionIsPulledOnceAndAdmitted() throws InterruptedException {
+        Transaction tx = tx(1000);
+        PeerChannel first = new PeerChannel();
+        PeerChannel second = new PeerChannel();
+
+        assertEquals(1, admission.request(first, hashes(tx)).size());
+        // asked already, the second announcer waits for its turn
+        assertTrue(admission.request(second, hashes(tx)).isEmpty());
+
+        admission.submit(first, Collections.singletonList(tx));
+        for (int i = 0; i < 100 && pendingState.getWireTransaction(tx.getHash()) == null; ++i) {
+            Thread.sleep(50);
+        }
+
+        assertNotNull(pendingState.getWireTransaction(tx.getHash()));
+        assertEquals(1, admission.getAdmittedCount());
+        assertTrue(admission.request(new PeerChannel(), hashes(tx)).isEmpty());
+
+        // a late empty reply doesn't bother the other announcer
+        admission.notDelivered(first, hashes(tx));
+        assertTrue(second.asked.isEmpty());
+    }
+
+    @Test
+    public void emptyReplyMovesToNextAnnouncer() {
+        Transaction tx1 = tx(1000);
+        Transaction tx2 = tx(1001);
+        PeerChannel first = new PeerChannel();
+        PeerChannel second = new PeerChannel();
+        PeerChannel third = new PeerChannel();
+
+        assertEquals(2, admission.request(first, hashes(tx1, tx2)).size());
+        admission.request(second, hashes(tx1));
+        admission.request(third, hashes(tx1, tx2));
+
+        admission.notDelivered(first, hashes(tx1, tx2));
+
+        assertEquals(1, second.asked.size());
+        assertArrayEquals(tx1.getHash(), second.asked.get(0));
+        assertEquals(1, third.asked.size());
+        assertArrayEquals(tx2.getHash(), third.asked.get(0));
+
+        // only the asked peer moves the transaction on
+        admission.notDelivered(first, hashes(tx1));
+        assertEquals(1, third.asked.size());
+
+        admission.notDelivered(second, hashes(tx1));
+        assertEquals(2, third.asked.size());
+        assertArrayEquals(tx1.getHash(), third.asked.get(1));
+
+        // nobody is left, the next announcement is pulled right away
+        admission.notDelivered(third, hashes(tx1));
+        assertEquals(1, admission.request(new PeerChannel(), hashes(tx1)).size());
+        assertEquals(3, admission.getRetriedCount());
+    }
+
+    @Test
+    public void disconnectedPeerIsReplaced() {
+        Transaction tx = tx(1000);
+        PeerChannel first = new PeerChannel();
+        PeerChannel second = new PeerChannel();
+        admission.request(first, hashes(tx));
+        admission.request(second, hashes(tx));
+        admission.request(first, hashes(tx));
+
+        admission.onDisconnect(first);
+
+        assertEquals(1, second.asked.size());
+        assertArrayEquals(tx.getHash(), second.asked.get(0));
+    }
+
+    private static class PeerChannel extends Channel {
+        final List<byte[]> asked = new ArrayList<>();
+
+        @Override
+        public void requestTransactions(List<byte[]> hashes) {
+            asked.addAll(hashes);
+        }
+    }
+}